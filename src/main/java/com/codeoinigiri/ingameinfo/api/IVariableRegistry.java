@@ -1,6 +1,10 @@
 package com.codeoinigiri.ingameinfo.api;
 
 import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
@@ -13,8 +17,68 @@ import java.util.function.Supplier;
 public interface IVariableRegistry {
     void register(String key, String value);
     void register(String key, Supplier<String> supplier);
+
+    /**
+     * Registers a supplier whose result is cached and re-invoked according to the given policy.
+     * Implementations that do not cache fall back to {@link #register(String, Supplier)}.
+     */
+    default void register(String key, Supplier<String> supplier, RefreshPolicy policy) {
+        register(key, supplier);
+    }
+
+    /**
+     * Marks the cached value of a supplier as stale so that it is re-invoked on the next tick.
+     */
+    default void invalidate(String key) {}
+
+    /**
+     * Registers a supplier of double values. Values stay numeric for expressions
+     * and are only formatted for display. Implementations without typed storage
+     * fall back to a string supplier.
+     */
+    default void registerDouble(String key, DoubleSupplier supplier, RefreshPolicy policy) {
+        register(key, () -> String.valueOf(supplier.getAsDouble()), policy);
+    }
+
+    /**
+     * Registers a supplier of long values.
+     * @see #registerDouble(String, DoubleSupplier, RefreshPolicy)
+     */
+    default void registerLong(String key, LongSupplier supplier, RefreshPolicy policy) {
+        register(key, () -> String.valueOf(supplier.getAsLong()), policy);
+    }
+
+    /**
+     * Registers a supplier of boolean values.
+     * @see #registerDouble(String, DoubleSupplier, RefreshPolicy)
+     */
+    default void registerBoolean(String key, BooleanSupplier supplier, RefreshPolicy policy) {
+        register(key, () -> String.valueOf(supplier.getAsBoolean()), policy);
+    }
     void update(String key, String newValue);
+
+    /**
+     * Applies many updates at once so that the HUD never shows a partially updated set.
+     * Keys that are not registered yet are registered as static variables.
+     * Implementations without atomic publication fall back to one registration per value.
+     */
+    default void batch(Consumer<VariableBatch> updates) {
+        VariableBatch batch = new VariableBatch();
+        updates.accept(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            register(batch.keyAt(i), String.valueOf(batch.valueAt(i)));
+        }
+    }
     void unregister(String key);
+
+    /**
+     * Subscribes to changes of a key, or of every key in a namespace when it ends with {@code *}.
+     * The listener is called once per tick for each changed key with its final value for that tick.
+     * Implementations without change tracking return {@link VariableSubscription#NONE}.
+     */
+    default VariableSubscription subscribe(String keyOrPrefix, VariableListener listener) {
+        return VariableSubscription.NONE;
+    }
     String get(String key);
     Map<String, String> getAll();
     boolean contains(String key);
@@ -0,0 +1,91 @@
+package com.codeoinigiri.ingameinfo.api;
+
+/**
+ * 動的な変数（Supplier）をいつ呼び直すかの方針。
+ * Single Responsibility Principle: Supplier の結果をいつ破棄するかの判定のみに責任を持つ
+ *
+ * Supplier の結果はキャッシュされ、方針に従ってクライアントティックで呼び直される。
+ * 描画での取得はキャッシュを返すだけなので、重い Supplier でもフレームごとには呼ばれない。
+ * VariableAPI.get や /igi list などの明示的な取得では、呼び直す時期を過ぎていればその場で呼び直す。
+ *
+ * 使用例：
+ *   VariableAPI.register("mymod.storage", () -> countItems(), RefreshPolicy.everyTicks(20));
+ *   VariableAPI.register("mymod.status", () -> status(), RefreshPolicy.onDemand());
+ *   VariableAPI.invalidate("mymod.status"); // 次のティックで呼び直される
+ */
+public final class RefreshPolicy {
+    /** 既定の方針: 1ティックに一度だけ呼ぶ（フレームごとには呼ばない） */
+    public static final RefreshPolicy DEFAULT = new RefreshPolicy(Mode.EVERY_TICKS, 1);
+
+    private static final RefreshPolicy ON_DEMAND = new RefreshPolicy(Mode.ON_DEMAND, 0);
+    private static final RefreshPolicy EVERY_READ = new RefreshPolicy(Mode.EVERY_READ, 0);
+
+    private enum Mode { EVERY_TICKS, ON_DEMAND, EVERY_READ }
+
+    private final Mode mode;
+    private final int ticks;
+
+    private RefreshPolicy(Mode mode, int ticks) {
+        this.mode = mode;
+        this.ticks = ticks;
+    }
+
+    /**
+     * 指定したティック数ごとに呼び直す
+     *
+     * @param ticks 間隔（ティック、1以上）
+     */
+    public static RefreshPolicy everyTicks(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("ticks must be at least 1: " + ticks);
+        }
+        return ticks == 1 ? DEFAULT : new RefreshPolicy(Mode.EVERY_TICKS, ticks);
+    }
+
+    /**
+     * 最初の取得時と、VariableAPI.invalidate が呼ばれた後のティックでのみ呼び直す
+     */
+    public static RefreshPolicy onDemand() {
+        return ON_DEMAND;
+    }
+
+    /**
+     * 取得のたびに呼ぶ（キャッシュしない）
+     * 描画のたびに呼ばれるため、軽い Supplier にのみ使うこと
+     */
+    public static RefreshPolicy everyRead() {
+        return EVERY_READ;
+    }
+
+    /**
+     * キャッシュを使わず取得のたびに呼ぶか
+     */
+    public boolean isEveryRead() {
+        return mode == Mode.EVERY_READ;
+    }
+
+    /**
+     * キャッシュした値を呼び直す時期か
+     *
+     * @param cachedTick  最後に呼んだティック、未取得なら -1
+     * @param tick        現在のティック
+     * @param invalidated invalidate されたか
+     */
+    public boolean isDue(long cachedTick, long tick, boolean invalidated) {
+        if (cachedTick < 0 || invalidated) return true;
+        return switch (mode) {
+            case EVERY_TICKS -> tick - cachedTick >= ticks;
+            case ON_DEMAND -> false;
+            case EVERY_READ -> true;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (mode) {
+            case EVERY_TICKS -> "everyTicks(" + ticks + ")";
+            case ON_DEMAND -> "onDemand()";
+            case EVERY_READ -> "everyRead()";
+        };
+    }
+}
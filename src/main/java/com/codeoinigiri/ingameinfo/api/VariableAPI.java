@@ -4,6 +4,10 @@ import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
 import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
@@ -13,7 +17,11 @@ import java.util.function.Supplier;
  * 
  * 使用例：
  *   VariableAPI.register("custom.myvar", "value");
+ *   VariableHandle handle = VariableAPI.register("custom.counter", "0");
+ *   handle.setLong(42);
  *   VariableAPI.register("custom.dynamic", () -> getCurrentValue());
+ *   VariableAPI.register("custom.heavy", () -> scanStorage(), RefreshPolicy.everyTicks(20));
+ *   VariableAPI.registerDouble("custom.ratio", () -> getRatio());
  */
 public class VariableAPI {
     private static final Logger LOGGER = LogUtils.getLogger();
@@ -34,17 +42,21 @@ public class VariableAPI {
 
     /**
      * 静的な値を持つカスタム変数を登録します
-     * @param key 変数キー (推奨形式: "namespace.key")
+     * 返されるハンドルを使うと、キーの検索や割り当てなしで値を更新できます
+     * @param key 変数キー (推奨形式: "namespace.key"、"player.health" などの組み込みの変数キーは登録できません)
      * @param value 値
+     * @return 値を更新するためのハンドル（登録解除で無効になります）
      * 
-     * 例: VariableAPI.register("mymod.level", "10");
+     * 例: VariableHandle level = VariableAPI.register("mymod.level", "10");
+     *     level.setLong(20);
      */
-    public static void register(String key, String value) {
-        VariableRegistryImpl.register(key, value);
+    public static VariableHandle register(String key, String value) {
+        return VariableRegistryImpl.register(key, value);
     }
 
     /**
-     * 動的な値（毎回最新値を生成）を持つ変数を登録します
+     * 動的な値を持つ変数を登録します
+     * 値は1ティックに一度だけ生成され、描画ではキャッシュが使われます
      * @param key 変数キー
      * @param supplier 値を生成する関数
      * 
@@ -54,12 +66,107 @@ public class VariableAPI {
         VariableRegistryImpl.register(key, supplier);
     }
 
+    /**
+     * 動的な値を持つ変数を、値を生成し直す方針を指定して登録します
+     * @param key 変数キー
+     * @param supplier 値を生成する関数
+     * @param policy 生成し直す方針（everyTicks / onDemand / everyRead）
+     * 
+     * 例: VariableAPI.register("mymod.storage", () -> countItems(), RefreshPolicy.everyTicks(20));
+     */
+    public static void register(String key, Supplier<String> supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.register(key, supplier, policy);
+    }
+
+    // ===============================
+    // 🔢 型付きの変数登録
+    // ===============================
+    // 値は文字列に変換されず数値のまま保持され、式からはそのまま参照されます。
+    // 文字列への整形は HUD に表示する時にだけ行われます。
+
+    /**
+     * 小数の値を持つ変数を登録します（表示時に "0.##" で整形されます）
+     * @return 値を更新するためのハンドル
+     *
+     * 例: VariableHandle speed = VariableAPI.registerDouble("mymod.speed", 0);
+     *     speed.setDouble(player.getSpeed());
+     */
+    public static VariableHandle registerDouble(String key, double value) {
+        return VariableRegistryImpl.registerDouble(key, value);
+    }
+
+    /**
+     * 整数の値を持つ変数を登録します
+     * @return 値を更新するためのハンドル
+     */
+    public static VariableHandle registerLong(String key, long value) {
+        return VariableRegistryImpl.registerLong(key, value);
+    }
+
+    /**
+     * 真偽値を持つ変数を登録します
+     * @return 値を更新するためのハンドル
+     */
+    public static VariableHandle registerBoolean(String key, boolean value) {
+        return VariableRegistryImpl.registerBoolean(key, value);
+    }
+
+    /**
+     * 小数を返す動的な変数を登録します（1ティックに一度だけ呼ばれます）
+     *
+     * 例: VariableAPI.registerDouble("mymod.mana_ratio", () -> mana / maxMana);
+     */
+    public static void registerDouble(String key, DoubleSupplier supplier) {
+        VariableRegistryImpl.registerDouble(key, supplier, RefreshPolicy.DEFAULT);
+    }
+
+    /**
+     * 小数を返す動的な変数を、呼び直す方針を指定して登録します
+     * 型付きの変数は everyRead() を指定しても1ティックに一度だけ呼ばれます
+     */
+    public static void registerDouble(String key, DoubleSupplier supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.registerDouble(key, supplier, policy);
+    }
+
+    /**
+     * 整数を返す動的な変数を登録します（1ティックに一度だけ呼ばれます）
+     *
+     * 例: VariableAPI.registerLong("mymod.stored_items", () -> storage.count(), RefreshPolicy.everyTicks(20));
+     */
+    public static void registerLong(String key, LongSupplier supplier) {
+        VariableRegistryImpl.registerLong(key, supplier, RefreshPolicy.DEFAULT);
+    }
+
+    /**
+     * 整数を返す動的な変数を、呼び直す方針を指定して登録します
+     */
+    public static void registerLong(String key, LongSupplier supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.registerLong(key, supplier, policy);
+    }
+
+    /**
+     * 真偽値を返す動的な変数を登録します（1ティックに一度だけ呼ばれます）
+     *
+     * 例: VariableAPI.registerBoolean("mymod.boss_active", () -> boss != null);
+     */
+    public static void registerBoolean(String key, BooleanSupplier supplier) {
+        VariableRegistryImpl.registerBoolean(key, supplier, RefreshPolicy.DEFAULT);
+    }
+
+    /**
+     * 真偽値を返す動的な変数を、呼び直す方針を指定して登録します
+     */
+    public static void registerBoolean(String key, BooleanSupplier supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.registerBoolean(key, supplier, policy);
+    }
+
     // ===============================
     // ♻️ 変数更新
     // ===============================
 
     /**
      * 既存の静的変数の値を更新します
+     * 毎ティック更新する場合は register が返す VariableHandle の利用を推奨します
      * @param key 変数キー
      * @param newValue 新しい値
      * 
@@ -69,6 +176,33 @@ public class VariableAPI {
         VariableRegistryImpl.update(key, newValue);
     }
 
+    /**
+     * 複数の値をまとめて更新します
+     * すべての値が同時に反映されるため、HUD に一部だけが更新された状態は表示されません
+     * 1つずつ update を呼ぶよりも1件あたりの負荷が小さくなります
+     * 未登録のキーは静的な変数として登録されます
+     * @param updates 値を設定する処理（例外を投げた場合は何も反映されません）
+     *
+     * 例: VariableAPI.batch(b -> b
+     *         .set("mymod.machine.status", "running")
+     *         .setLong("mymod.machine.progress", 42)
+     *         .setDouble("mymod.machine.energy", 0.75));
+     */
+    public static void batch(Consumer<VariableBatch> updates) {
+        VariableRegistryImpl.batch(updates);
+    }
+
+    /**
+     * 動的な変数のキャッシュを破棄し、次のティックで値を生成し直させます
+     * RefreshPolicy.onDemand() で登録した変数の更新に使います
+     * @param key 変数キー
+     * 
+     * 例: VariableAPI.invalidate("mymod.status");
+     */
+    public static void invalidate(String key) {
+        VariableRegistryImpl.invalidate(key);
+    }
+
     // ===============================
     // 🗑 変数削除
     // ===============================
@@ -104,6 +238,27 @@ public class VariableAPI {
         return VariableRegistryImpl.getAll();
     }
 
+    // ===============================
+    // 🔔 変化の購読
+    // ===============================
+
+    /**
+     * 変数の変化を購読します
+     * リスナーは1ティックに一度、そのティックに変わった変数ごとに最終値で呼ばれます
+     * 毎ティック get で値を取得して比較するよりも負荷が小さく、何も変わらないティックでは何も行いません
+     * キーが "*" で終わる場合は名前空間（例: "player.*"）のすべての変数を購読します
+     * 最初の通知では購読時点の値が届きます
+     * @param keyOrPrefix 変数キー、または名前空間
+     * @param listener 変化を受け取るリスナー（クライアントスレッドで呼ばれます）
+     * @return 購読の解除に使う VariableSubscription
+     *
+     * 例: VariableAPI.subscribe("player.health", (key, value) -> onHealthChanged(value));
+     *     VariableAPI.subscribe("mymod.machine.*", (key, value) -> refresh(key));
+     */
+    public static VariableSubscription subscribe(String keyOrPrefix, VariableListener listener) {
+        return VariableRegistryImpl.subscribe(keyOrPrefix, listener);
+    }
+
     // ===============================
     // ❓ 存在確認
     // ===============================
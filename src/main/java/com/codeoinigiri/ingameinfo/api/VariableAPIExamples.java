@@ -23,8 +23,8 @@ public class VariableAPIExamples {
     }
 
     /**
-     * 例2: 動的な値（毎回最新値を生成）を登録
-     * 呼び出すたびに現在のタイムスタンプが表示される
+     * 例2: 動的な値（1ティックに一度最新値を生成）を登録
+     * ティックごとに現在のタイムスタンプが表示される
      */
     public static void example_2_dynamicVariable() {
         VariableAPI.register("custom.timestamp", 
@@ -104,6 +104,63 @@ public class VariableAPIExamples {
         VariableAPI.clear();
     }
 
+    /**
+     * 例9: ハンドルで毎ティック更新
+     * キーの検索や割り当てなしでスロットに直接書き込む
+     */
+    public static void example_9_handle() {
+        VariableHandle mana = VariableAPI.register("custom.mana", "0");
+
+        // ティックイベントなどで：
+        mana.setLong(100);
+        mana.setDouble(99.5);
+
+        // 登録解除後のハンドルは無効（書き込みは無視され、set は false を返す）
+        VariableAPI.unregister("custom.mana");
+        if (!mana.set("ignored")) {
+            mana = VariableAPI.register("custom.mana", "0");
+        }
+    }
+
+    /**
+     * 例10: 型付きの変数
+     * 値は数値のまま保持され、式 ${custom.health_ratio * 100} でも文字列との変換が起きない
+     */
+    public static void example_10_typed() {
+        VariableAPI.registerDouble("custom.health_ratio", () -> 0.75);
+        VariableAPI.registerLong("custom.stored_items", () -> 1024L, RefreshPolicy.everyTicks(20));
+        VariableAPI.registerBoolean("custom.boss_active", () -> false);
+
+        VariableHandle speed = VariableAPI.registerDouble("custom.speed", 0);
+        speed.setDouble(4.317); // 表示時に "4.32" と整形される
+    }
+
+    /**
+     * 例11: 一括更新
+     * 関連する値をまとめて反映し、HUD に更新途中の状態を表示しない
+     */
+    public static void example_11_batch() {
+        VariableAPI.batch(b -> b
+                .set("custom.machine.status", "running")
+                .setLong("custom.machine.progress", 42)
+                .setDouble("custom.machine.energy", 0.75)
+                .setBoolean("custom.machine.powered", true));
+    }
+
+    /**
+     * 例12: 変化の購読
+     * 毎ティック get で比較する代わりに、変わった時だけ通知を受け取る
+     */
+    public static void example_12_subscribe() {
+        VariableSubscription health = VariableAPI.subscribe("player.health",
+                (key, value) -> System.out.println("Health: " + value));
+        VariableAPI.subscribe("custom.machine.*",
+                (key, value) -> System.out.println(key + " = " + value));
+
+        // 不要になったら解除
+        health.unsubscribe();
+    }
+
     // ===============================
     // 🎯 実践的なパターン
     // ===============================
@@ -117,6 +174,12 @@ public class VariableAPIExamples {
         VariableAPI.register("integration.other_mod", "some_data");
         VariableAPI.register("integration.mana", 
             () -> String.valueOf(100)); // 例
+
+        // 重い集計は変化を通知された時だけ行う
+        VariableAPI.register("integration.storage_items",
+            () -> String.valueOf(0), RefreshPolicy.onDemand()); // 例
+        // 他Modのイベントで中身が変わった時：
+        // VariableAPI.invalidate("integration.storage_items");
     }
 
     /**
@@ -134,6 +197,7 @@ public class VariableAPIExamples {
     /**
      * パターン3: リアルタイムモニタリング
      * メモリ使用量、アップタイム、パフォーマンスなど
+     * 毎ティック更新する必要のない値は RefreshPolicy で生成の間隔を広げる
      */
     public static void pattern_3_realtimeMonitoring() {
         VariableAPI.register("system.memory", 
@@ -141,7 +205,7 @@ public class VariableAPIExamples {
                 long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
                 long max = Runtime.getRuntime().maxMemory();
                 return (used / 1024 / 1024) + "MB / " + (max / 1024 / 1024) + "MB";
-            });
+            }, RefreshPolicy.everyTicks(20));
 
         VariableAPI.register("system.uptime", 
             () -> {
@@ -149,7 +213,7 @@ public class VariableAPIExamples {
                 long hours = uptime / 3600;
                 long minutes = (uptime % 3600) / 60;
                 return String.format("%dh %dm", hours, minutes);
-            });
+            }, RefreshPolicy.everyTicks(20 * 60));
     }
 
     /**
@@ -0,0 +1,76 @@
+package com.codeoinigiri.ingameinfo.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 📦 VariableAPI.batch に渡される一括更新の内容
+ * Single Responsibility Principle: 一括で適用する値を集めることのみに責任を持つ
+ *
+ * set で集めた値は batch の処理が終わった後にまとめて適用されるため、
+ * HUD に一部だけが更新された状態が表示されることはない。
+ * 同じキーを複数回 set した場合は最後の値が使われる。
+ * 登録されていないキーは静的な変数として登録され、動的な変数は静的な値で置き換えられる。
+ *
+ * 使用例：
+ *   VariableAPI.batch(b -> {
+ *       b.set("mymod.machine.status", "running");
+ *       b.setLong("mymod.machine.progress", progress);
+ *       b.setDouble("mymod.machine.energy", energy);
+ *   });
+ */
+public final class VariableBatch {
+    private final List<String> keys = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    VariableBatch() {}
+
+    /**
+     * 文字列を設定します
+     */
+    public VariableBatch set(String key, String value) {
+        return add(key, value != null ? value : "");
+    }
+
+    /**
+     * 小数を設定します（表示時に "0.##" で整形され、式からは数値のまま参照されます）
+     */
+    public VariableBatch setDouble(String key, double value) {
+        return add(key, value);
+    }
+
+    /**
+     * 整数を設定します
+     */
+    public VariableBatch setLong(String key, long value) {
+        return add(key, value);
+    }
+
+    /**
+     * 真偽値を設定します
+     */
+    public VariableBatch setBoolean(String key, boolean value) {
+        return add(key, value);
+    }
+
+    /**
+     * 集めた値の数
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private VariableBatch add(String key, Object value) {
+        keys.add(key);
+        values.add(value);
+        return this;
+    }
+
+    String keyAt(int index) {
+        return keys.get(index);
+    }
+
+    Object valueAt(int index) {
+        return values.get(index);
+    }
+}
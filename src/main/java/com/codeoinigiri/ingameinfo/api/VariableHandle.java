@@ -0,0 +1,85 @@
+package com.codeoinigiri.ingameinfo.api;
+
+import com.codeoinigiri.ingameinfo.variable.CustomVariable;
+
+/**
+ * 🔗 VariableAPI.register が返す変数のハンドル
+ * Single Responsibility Principle: 登録済みの変数の値を直接書き換えることのみに責任を持つ
+ *
+ * 値は変数のスロットに直接書き込まれるため、キーの検索や割り当てが発生しない。
+ * 毎ティック値を更新する場合は VariableAPI.update よりこちらを使う。
+ * 変数が登録解除されたり、同じキーで登録し直されたりするとハンドルは無効になり、
+ * 以降の書き込みは無視される（false を返す）。
+ *
+ * 使用例：
+ *   VariableHandle mana = VariableAPI.register("mymod.mana", "0");
+ *   mana.setLong(player.getMana()); // 毎ティック
+ */
+public final class VariableHandle {
+    private final String key;
+    // 書き込み先の登録。無効なハンドルは null
+    private final CustomVariable registration;
+
+    VariableHandle(CustomVariable registration) {
+        this.key = registration.key();
+        this.registration = registration;
+    }
+
+    private VariableHandle(String key) {
+        this.key = key;
+        this.registration = null;
+    }
+
+    /**
+     * 書き込みを常に無視するハンドル（登録に失敗した場合）
+     */
+    static VariableHandle invalid(String key) {
+        return new VariableHandle(key);
+    }
+
+    /**
+     * 文字列を書き込みます
+     * @return 書き込んだ場合 true、ハンドルが無効な場合 false
+     */
+    public boolean set(String value) {
+        return registration != null && registration.write(value);
+    }
+
+    /**
+     * 小数を書き込みます（表示時に "0.##" で整形され、式からは数値のまま参照されます）
+     * @return 書き込んだ場合 true、ハンドルが無効な場合 false
+     */
+    public boolean setDouble(double value) {
+        return registration != null && registration.write(value);
+    }
+
+    /**
+     * 整数を書き込みます
+     * @return 書き込んだ場合 true、ハンドルが無効な場合 false
+     */
+    public boolean setLong(long value) {
+        return registration != null && registration.write(value);
+    }
+
+    /**
+     * 真偽値を書き込みます
+     * @return 書き込んだ場合 true、ハンドルが無効な場合 false
+     */
+    public boolean setBoolean(boolean value) {
+        return registration != null && registration.write(value);
+    }
+
+    /**
+     * ハンドルが有効か（登録解除・再登録されていないか）
+     */
+    public boolean isValid() {
+        return registration != null && registration.isActive();
+    }
+
+    /**
+     * 変数キー
+     */
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,20 @@
+package com.codeoinigiri.ingameinfo.api;
+
+/**
+ * 👂 変数の変化を受け取るリスナー
+ * Single Responsibility Principle: 購読した変数の変化を1件ずつ受け取ることのみに責任を持つ
+ *
+ * クライアントスレッドで1ティックに一度だけ、そのティックに変わった変数ごとに呼ばれる。
+ * 同じティック内に何度変わっても、渡されるのはそのティックの最終値のみ。
+ *
+ * 使用例：
+ *   VariableAPI.subscribe("player.health", (key, value) -> onHealthChanged(value));
+ */
+@FunctionalInterface
+public interface VariableListener {
+    /**
+     * @param key   変わった変数のキー
+     * @param value 新しい値（表示用の文字列）、値が消えた場合は null
+     */
+    void onChange(String key, String value);
+}
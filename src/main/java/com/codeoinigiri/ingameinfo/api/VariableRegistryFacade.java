@@ -1,6 +1,10 @@
 package com.codeoinigiri.ingameinfo.api;
 
 import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
@@ -19,16 +23,51 @@ class VariableRegistryFacade implements IVariableRegistry {
         VariableRegistryImpl.register(key, supplier);
     }
 
+    @Override
+    public void register(String key, Supplier<String> supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.register(key, supplier, policy);
+    }
+
+    @Override
+    public void registerDouble(String key, DoubleSupplier supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.registerDouble(key, supplier, policy);
+    }
+
+    @Override
+    public void registerLong(String key, LongSupplier supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.registerLong(key, supplier, policy);
+    }
+
+    @Override
+    public void registerBoolean(String key, BooleanSupplier supplier, RefreshPolicy policy) {
+        VariableRegistryImpl.registerBoolean(key, supplier, policy);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        VariableRegistryImpl.invalidate(key);
+    }
+
     @Override
     public void update(String key, String newValue) {
         VariableRegistryImpl.update(key, newValue);
     }
 
+    @Override
+    public void batch(Consumer<VariableBatch> updates) {
+        VariableRegistryImpl.batch(updates);
+    }
+
     @Override
     public void unregister(String key) {
         VariableRegistryImpl.unregister(key);
     }
 
+    @Override
+    public VariableSubscription subscribe(String keyOrPrefix, VariableListener listener) {
+        return VariableRegistryImpl.subscribe(keyOrPrefix, listener);
+    }
+
     @Override
     public String get(String key) {
         return VariableRegistryImpl.get(key);
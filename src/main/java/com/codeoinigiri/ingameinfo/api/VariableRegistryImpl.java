@@ -1,11 +1,19 @@
 package com.codeoinigiri.ingameinfo.api;
 
 import com.codeoinigiri.ingameinfo.variable.CustomVariable;
+import com.codeoinigiri.ingameinfo.variable.VariableLookup;
+import com.codeoinigiri.ingameinfo.variable.VariableManager;
+import com.codeoinigiri.ingameinfo.variable.VariableTable;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -13,10 +21,23 @@ import java.util.function.Supplier;
  * Single Responsibility Principle: カスタム変数の管理のみに責任を持つ
  * VariableAPI の実装を担当するクラス。
  * 外部コードからは VariableAPI を使用してください。
+ *
+ * Supplier の結果はキャッシュし、RefreshPolicy に従ってクライアントティック（tick）で呼び直す。
+ * スナップショットの公開（getCached）はキャッシュを返すだけなので、描画のたびに Supplier が呼ばれることはない。
+ * 明示的な取得（get / getAll）は、呼び直す時期を過ぎていればその場で呼び直して最新の値を返す。
+ * Supplier の1回の呼び出しには時間の予算があり、超過や例外を繰り返す Supplier は
+ * 別スレッドでの評価や一時停止に切り替わる（CustomVariable.Health）。
+ *
+ * 型付きの登録（registerDouble / registerLong / registerBoolean）は値を VariableTable のスロットに
+ * 数値のまま書き込むため、式の評価で文字列との変換が起きず、整形は表示する時にだけ行われる。
  */
 public class VariableRegistryImpl {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final Map<String, CustomVariable> customVariables = new ConcurrentHashMap<>();
+    // Supplier の呼び直しの判定に使うティック数（tick で進む）
+    private static volatile long currentTick;
+    // Supplier の1回の呼び出しの予算（tick で設定から更新される）
+    private static volatile long supplierBudgetNanos = 2_000_000L;
 
     private VariableRegistryImpl() {
         // ユーティリティクラスのため、インスタンス化を防止
@@ -24,43 +45,261 @@ public class VariableRegistryImpl {
 
     /**
      * 静的な値を持つ変数を登録
+     * 値は VariableTable のスロットに直接保持し、返すハンドルからキーの検索なしで更新できる
+     *
+     * @return 値を更新するためのハンドル、キーが不正な場合は無効なハンドル
      */
-    public static void register(String key, String value) {
-        if (!validateKey(key)) return;
+    public static VariableHandle register(String key, String value) {
+        if (!validateKey(key)) return VariableHandle.invalid(key);
+
+        CustomVariable var = registerSlot(key);
+        var.write(value);
+        LOGGER.debug("Registered custom variable: {} = {}", key, value);
+        return new VariableHandle(var);
+    }
+
+    /**
+     * 小数の静的な値を持つ変数を登録（式からは数値のまま参照され、表示時に "0.##" で整形される）
+     *
+     * @return 値を更新するためのハンドル、キーが不正な場合は無効なハンドル
+     */
+    public static VariableHandle registerDouble(String key, double value) {
+        if (!validateKey(key)) return VariableHandle.invalid(key);
 
-        customVariables.put(key, new CustomVariable(key, value, null));
+        CustomVariable var = registerSlot(key);
+        var.write(value);
         LOGGER.debug("Registered custom variable: {} = {}", key, value);
+        return new VariableHandle(var);
     }
 
     /**
-     * 動的な値を持つ変数を登録
+     * 整数の静的な値を持つ変数を登録
+     *
+     * @return 値を更新するためのハンドル、キーが不正な場合は無効なハンドル
+     */
+    public static VariableHandle registerLong(String key, long value) {
+        if (!validateKey(key)) return VariableHandle.invalid(key);
+
+        CustomVariable var = registerSlot(key);
+        var.write(value);
+        LOGGER.debug("Registered custom variable: {} = {}", key, value);
+        return new VariableHandle(var);
+    }
+
+    /**
+     * 真偽値の静的な値を持つ変数を登録
+     *
+     * @return 値を更新するためのハンドル、キーが不正な場合は無効なハンドル
+     */
+    public static VariableHandle registerBoolean(String key, boolean value) {
+        if (!validateKey(key)) return VariableHandle.invalid(key);
+
+        CustomVariable var = registerSlot(key);
+        var.write(value);
+        LOGGER.debug("Registered custom variable: {} = {}", key, value);
+        return new VariableHandle(var);
+    }
+
+    private static CustomVariable registerSlot(String key) {
+        CustomVariable var = CustomVariable.ofSlot(key, VariableTable.getInstance().intern(key));
+        replace(key, var);
+        return var;
+    }
+
+    /**
+     * 登録を差し替え、前の登録を無効にする（前のハンドルからの書き込みは無視される）
+     * スロットを使う登録は、前の登録がスロットを空けた後にスロットを確保する
+     */
+    private static void replace(String key, CustomVariable var) {
+        CustomVariable previous = customVariables.put(key, var);
+        if (previous != null) previous.release();
+        var.claim();
+    }
+
+    /**
+     * 動的な値を持つ変数を既定の方針（1ティックに一度）で登録
      */
     public static void register(String key, Supplier<String> supplier) {
+        register(key, supplier, RefreshPolicy.DEFAULT);
+    }
+
+    /**
+     * 動的な値を持つ変数を、呼び直しの方針を指定して登録
+     */
+    public static void register(String key, Supplier<String> supplier, RefreshPolicy policy) {
+        if (!validateKey(key)) return;
+        if (!validateSupplier(supplier)) return;
+        RefreshPolicy safePolicy = policy != null ? policy : RefreshPolicy.DEFAULT;
+
+        // スロットを割り当て、スナップショットと名前空間の購読から見えるようにする
+        VariableTable.getInstance().intern(key);
+        replace(key, CustomVariable.ofSupplier(key, supplier, safePolicy, VariableTable.getInstance().nextVersion()));
+        LOGGER.debug("Registered dynamic custom variable: {} ({})", key, safePolicy);
+    }
+
+    /**
+     * 小数を返す動的な変数を、呼び直しの方針を指定して登録
+     * 結果はスロットに数値のまま書き込まれる（1ティックに二度以上は呼ばれない）
+     */
+    public static void registerDouble(String key, DoubleSupplier supplier, RefreshPolicy policy) {
+        if (!validateKey(key)) return;
+        if (!validateSupplier(supplier)) return;
+        RefreshPolicy safePolicy = policy != null ? policy : RefreshPolicy.DEFAULT;
+
+        replace(key, CustomVariable.ofDouble(key, VariableTable.getInstance().intern(key), supplier, safePolicy));
+        LOGGER.debug("Registered typed custom variable: {} (double, {})", key, safePolicy);
+    }
+
+    /**
+     * 整数を返す動的な変数を、呼び直しの方針を指定して登録
+     */
+    public static void registerLong(String key, LongSupplier supplier, RefreshPolicy policy) {
         if (!validateKey(key)) return;
         if (!validateSupplier(supplier)) return;
+        RefreshPolicy safePolicy = policy != null ? policy : RefreshPolicy.DEFAULT;
 
-        customVariables.put(key, new CustomVariable(key, null, supplier));
-        LOGGER.debug("Registered dynamic custom variable: {}", key);
+        replace(key, CustomVariable.ofLong(key, VariableTable.getInstance().intern(key), supplier, safePolicy));
+        LOGGER.debug("Registered typed custom variable: {} (long, {})", key, safePolicy);
+    }
+
+    /**
+     * 真偽値を返す動的な変数を、呼び直しの方針を指定して登録
+     */
+    public static void registerBoolean(String key, BooleanSupplier supplier, RefreshPolicy policy) {
+        if (!validateKey(key)) return;
+        if (!validateSupplier(supplier)) return;
+        RefreshPolicy safePolicy = policy != null ? policy : RefreshPolicy.DEFAULT;
+
+        replace(key, CustomVariable.ofBoolean(key, VariableTable.getInstance().intern(key), supplier, safePolicy));
+        LOGGER.debug("Registered typed custom variable: {} (boolean, {})", key, safePolicy);
     }
 
     /**
      * 変数の値を更新
      */
     public static void update(String key, String newValue) {
-        if (!customVariables.containsKey(key)) {
+        CustomVariable current = customVariables.get(key);
+        if (current == null) {
             LOGGER.warn("Attempted to update non-existent variable: {}", key);
             return;
         }
-        customVariables.put(key, new CustomVariable(key, newValue, null));
+        if (current.isSlotBacked() && !current.isDynamic()) {
+            // スロットへ直接書き込む（同じ値の書き込みではバージョンは進まない）
+            current.write(newValue);
+        } else {
+            // 動的な変数は静的な値で置き換える
+            register(key, newValue);
+        }
         LOGGER.debug("Updated custom variable: {} = {}", key, newValue);
     }
 
+    /**
+     * 複数の値をまとめて更新
+     * 集めた値は登録の差し替えも含めてスナップショットの書き写しと排他して適用するため、
+     * HUD に一部だけが更新された状態が表示されることはない。ログも一括で1回だけ出す。
+     * updates が例外を投げた場合は何も適用しない。
+     */
+    public static void batch(Consumer<VariableBatch> updates) {
+        if (updates == null) {
+            LOGGER.error("Batch updates cannot be null");
+            return;
+        }
+        VariableBatch batch = new VariableBatch();
+        try {
+            updates.accept(batch);
+        } catch (Exception e) {
+            LOGGER.error("Batch update failed; no values were applied", e);
+            return;
+        }
+        int count = batch.size();
+        if (count == 0) return;
+
+        VariableTable.getInstance().applyAtomically(() -> {
+            for (int i = 0; i < count; i++) {
+                String key = batch.keyAt(i);
+                if (!validateKey(key)) continue;
+                CustomVariable target = customVariables.get(key);
+                if (target == null || !target.isSlotBacked() || target.isDynamic()) {
+                    // 未登録のキーや動的な変数は静的な変数として登録し直す
+                    target = registerSlot(key);
+                }
+                write(target, batch.valueAt(i));
+            }
+        });
+        LOGGER.debug("Applied batch of {} custom variable updates", count);
+    }
+
+    private static void write(CustomVariable var, Object value) {
+        if (value instanceof Double d) {
+            var.write(d.doubleValue());
+        } else if (value instanceof Long l) {
+            var.write(l.longValue());
+        } else if (value instanceof Boolean b) {
+            var.write(b.booleanValue());
+        } else {
+            var.write(value.toString());
+        }
+    }
+
+    /**
+     * 変数の変化を購読（API 変数だけでなく、プロバイダーの変数も購読できる）
+     */
+    public static VariableSubscription subscribe(String keyOrPrefix, VariableListener listener) {
+        return VariableManager.getInstance().subscribe(keyOrPrefix, listener);
+    }
+
+    /**
+     * 動的な変数のキャッシュを破棄し、次のティックで Supplier を呼び直させる
+     */
+    public static void invalidate(String key) {
+        CustomVariable var = customVariables.get(key);
+        if (var == null) {
+            LOGGER.warn("Attempted to invalidate non-existent variable: {}", key);
+            return;
+        }
+        var.invalidate();
+    }
+
+    /**
+     * ティックを進め、方針に従って呼び直す時期の Supplier を呼ぶ（クライアントティックごとに一度）
+     * 値が変わった変数はバージョンが進むため、スナップショットと描画のキャッシュが更新される
+     *
+     * @param demanded    値が必要とされているキーの判定（参照されていない変数は呼ばない）
+     * @param budgetNanos Supplier の1回の呼び出しの予算（ナノ秒）
+     */
+    public static void tick(Predicate<String> demanded, long budgetNanos) {
+        long tick = ++currentTick;
+        supplierBudgetNanos = budgetNanos;
+        for (CustomVariable var : customVariables.values()) {
+            if (var.isDynamic() && demanded.test(var.key())) {
+                var.refreshIfDue(tick, budgetNanos);
+            }
+        }
+    }
+
+    /**
+     * 動的な変数の状態（正常 / 低速 / 停止中）を取得
+     */
+    public static List<CustomVariable.Status> getSupplierStatuses() {
+        long tick = currentTick;
+        List<CustomVariable.Status> statuses = new ArrayList<>();
+        for (CustomVariable var : customVariables.values()) {
+            CustomVariable.Status status = var.getStatus(tick);
+            if (status != null) statuses.add(status);
+        }
+        statuses.sort(Comparator.comparing(CustomVariable.Status::key));
+        return statuses;
+    }
+
     /**
      * 変数を登録解除
      */
     public static void unregister(String key) {
         CustomVariable removed = customVariables.remove(key);
         if (removed != null) {
+            // ハンドルを無効にしてスロットを空ける。値が消えたこともエポックの変化として伝える
+            removed.release();
+            VariableTable.getInstance().nextVersion();
             LOGGER.debug("Unregistered custom variable: {}", key);
         } else {
             LOGGER.warn("Attempted to unregister non-existent variable: {}", key);
@@ -72,7 +311,28 @@ public class VariableRegistryImpl {
      */
     public static String get(String key) {
         CustomVariable var = customVariables.get(key);
-        return var != null ? var.getValue() : null;
+        return var != null ? var.getValue(currentTick, supplierBudgetNanos) : null;
+    }
+
+    /**
+     * スナップショット用に変数の値を取得（呼び直す時期を過ぎていても Supplier は呼ばず、キャッシュを返す）
+     * 取得のたびに呼ぶ変数（everyRead）と、まだ一度も呼ばれていない変数のみ Supplier を呼ぶ
+     */
+    public static String getCached(String key) {
+        CustomVariable var = customVariables.get(key);
+        return var != null ? var.cachedValue(currentTick, supplierBudgetNanos) : null;
+    }
+
+    /**
+     * 変数のバージョンを取得
+     * 取得のたびに Supplier を呼ぶ変数（everyRead）は値が変わり得るため VariableLookup.VOLATILE を返す
+     *
+     * @return バージョン、存在しない場合は 0
+     */
+    public static long getVersion(String key) {
+        CustomVariable var = customVariables.get(key);
+        if (var == null) return 0;
+        return var.isVolatile() ? VariableLookup.VOLATILE : var.version();
     }
 
     /**
@@ -82,7 +342,7 @@ public class VariableRegistryImpl {
         Map<String, String> result = new HashMap<>();
         customVariables.forEach((key, var) -> {
             try {
-                result.put(key, var.getValue());
+                result.put(key, var.getValue(currentTick, supplierBudgetNanos));
             } catch (Exception e) {
                 LOGGER.error("Failed to get value for variable: {}", key, e);
             }
@@ -90,6 +350,17 @@ public class VariableRegistryImpl {
         return result;
     }
 
+    /**
+     * 取得のたびに Supplier を呼ぶ変数（everyRead）が登録されているか
+     * これらは取得するまで変化が分からないため、エポックによる変化の判定ができない
+     */
+    public static boolean hasVolatile() {
+        for (CustomVariable var : customVariables.values()) {
+            if (var.isVolatile()) return true;
+        }
+        return false;
+    }
+
     /**
      * 変数が存在するか確認
      */
@@ -109,25 +380,33 @@ public class VariableRegistryImpl {
      */
     public static void clear() {
         int count = customVariables.size();
+        customVariables.values().forEach(CustomVariable::release);
         customVariables.clear();
+        VariableTable.getInstance().nextVersion();
         LOGGER.info("Cleared {} custom variables", count);
     }
 
     /**
      * キーのバリデーション
+     * プロバイダーが生成するキーはスロットを共有するため、登録するとプロバイダーの値で上書きされ、
+     * 登録解除でプロバイダーの値が消えてしまう。そのため API からの登録は拒否する
      */
     private static boolean validateKey(String key) {
         if (key == null || key.isEmpty()) {
             LOGGER.error("Variable key cannot be null or empty");
             return false;
         }
+        if (VariableManager.getInstance().isProviderKey(key)) {
+            LOGGER.error("Variable key '{}' is provided by a built-in provider and cannot be registered through the API", key);
+            return false;
+        }
         return true;
     }
 
     /**
      * Supplierのバリデーション
      */
-    private static boolean validateSupplier(Supplier<String> supplier) {
+    private static boolean validateSupplier(Object supplier) {
         if (supplier == null) {
             LOGGER.error("Supplier cannot be null");
             return false;
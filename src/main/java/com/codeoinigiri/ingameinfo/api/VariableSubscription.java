@@ -0,0 +1,30 @@
+package com.codeoinigiri.ingameinfo.api;
+
+/**
+ * 🔔 VariableAPI.subscribe が返す購読
+ * Single Responsibility Principle: 購読の解除と状態の確認のみに責任を持つ
+ */
+public interface VariableSubscription {
+    /**
+     * 何もしない購読（購読に失敗した場合）
+     */
+    VariableSubscription NONE = new VariableSubscription() {
+        @Override
+        public void unsubscribe() {}
+
+        @Override
+        public boolean isActive() {
+            return false;
+        }
+    };
+
+    /**
+     * 購読を解除します。以降リスナーは呼ばれません
+     */
+    void unsubscribe();
+
+    /**
+     * 購読が有効か
+     */
+    boolean isActive();
+}
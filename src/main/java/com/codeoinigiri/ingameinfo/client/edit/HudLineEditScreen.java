@@ -1,6 +1,7 @@
 package com.codeoinigiri.ingameinfo.client.edit;
 
 import com.codeoinigiri.ingameinfo.hud.HudContextIO;
+import com.codeoinigiri.ingameinfo.variable.VariableManager;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
@@ -9,13 +10,27 @@ import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public class HudLineEditScreen extends Screen {
+    private static final int MAX_SUGGESTIONS = 6;
+    private static final int KEY_TAB = 258;
+    private static final int KEY_DOWN = 264;
+    private static final int KEY_UP = 265;
 
     private final String contextName;
     private final int lineIndex;
     private final String initialText;
 
     private EditBox input;
+    // ${...} の中で入力途中の変数キーの補完候補（変数の索引から取得）
+    private List<String> suggestions = List.of();
+    private int selectedSuggestion;
+    // 補完で置き換える入力途中のキーの開始位置
+    private int tokenStart;
+    // 前回候補を求めた時の入力内容とカーソル位置（変わった時だけ求め直す）
+    private String suggestedValue;
+    private int suggestedCursor = -1;
 
     public HudLineEditScreen(Component title, String contextName, int lineIndex, String initialText) {
         super(title);
@@ -82,13 +97,95 @@ public class HudLineEditScreen extends Screen {
         int y = this.height / 2 - 70;
         guiGraphics.drawCenteredString(this.font, this.getTitle(), this.width / 2, y, 0xFFFFFF);
         guiGraphics.drawCenteredString(this.font, Component.translatable("ingameinfo.line_edit.hint").getString(), this.width / 2, y + 12, 0xAAAAAA);
+        renderSuggestions(guiGraphics);
+    }
+
+    /**
+     * 入力欄の下に補完候補を表示（選択中の候補は強調する）
+     */
+    private void renderSuggestions(GuiGraphics guiGraphics) {
+        if (suggestions.isEmpty() || input == null) return;
+        int x = input.getX();
+        int y = input.getY() + input.getHeight() + 32;
+        guiGraphics.drawString(this.font, Component.translatable("ingameinfo.line_edit.complete_hint").getString(), x, y, 0x888888);
+        for (int i = 0; i < suggestions.size(); i++) {
+            int color = i == selectedSuggestion ? 0xFFFF55 : 0xAAAAAA;
+            guiGraphics.drawString(this.font, suggestions.get(i), x, y + 10 * (i + 1), color);
+        }
     }
 
     @Override
-    public void tick() { if (input != null) input.tick(); }
+    public void tick() {
+        if (input != null) {
+            input.tick();
+            updateSuggestions();
+        }
+    }
+
+    /**
+     * カーソルが ${...} の中の変数キーの途中にあれば、索引から補完候補を求める
+     */
+    private void updateSuggestions() {
+        String value = input.getValue();
+        int cursor = input.getCursorPosition();
+        if (value.equals(suggestedValue) && cursor == suggestedCursor) return;
+        suggestedValue = value;
+        suggestedCursor = cursor;
+
+        int start = cursor;
+        while (start > 0 && isKeyChar(value.charAt(start - 1))) start--;
+        String partial = value.substring(start, cursor);
+        if (partial.isEmpty() || !isInsideExpression(value, start)) {
+            suggestions = List.of();
+            return;
+        }
+
+        List<String> keys = VariableManager.getInstance().completeKeys(partial, MAX_SUGGESTIONS);
+        // 入力済みのキーそのものしか候補がなければ表示しない
+        suggestions = keys.size() == 1 && keys.get(0).equals(partial) ? List.of() : keys;
+        selectedSuggestion = 0;
+        tokenStart = start;
+    }
+
+    private static boolean isKeyChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    /**
+     * 位置が閉じられていない ${ の後ろにあるか
+     */
+    private static boolean isInsideExpression(String value, int position) {
+        int open = value.lastIndexOf("${", position);
+        return open >= 0 && value.lastIndexOf('}', position - 1) < open;
+    }
+
+    /**
+     * 選択中の候補で入力途中のキーを置き換える
+     */
+    private void applySuggestion() {
+        String key = suggestions.get(selectedSuggestion);
+        String value = input.getValue();
+        int cursor = input.getCursorPosition();
+        input.setValue(value.substring(0, tokenStart) + key + value.substring(cursor));
+        input.setCursorPosition(tokenStart + key.length());
+        input.setHighlightPos(input.getCursorPosition());
+        suggestions = List.of();
+    }
 
     @Override
     public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
+        // 補完候補の操作は画面のフォーカス移動（Tab / 矢印キー）より優先する
+        if (!suggestions.isEmpty() && input != null && input.isFocused()) {
+            if (keyCode == KEY_TAB) {
+                applySuggestion();
+                return true;
+            }
+            if (keyCode == KEY_DOWN || keyCode == KEY_UP) {
+                int step = keyCode == KEY_DOWN ? 1 : suggestions.size() - 1;
+                selectedSuggestion = (selectedSuggestion + step) % suggestions.size();
+                return true;
+            }
+        }
         if (super.keyPressed(keyCode, scanCode, modifiers)) return true;
         if (keyCode == 257 || keyCode == 335) { // Enter or KP_Enter
             onSave();
@@ -2,9 +2,9 @@ package com.codeoinigiri.ingameinfo.client.hud;
 
 import com.codeoinigiri.ingameinfo.hud.HudContext;
 import com.codeoinigiri.ingameinfo.hud.HudContextManager;
-import com.codeoinigiri.ingameinfo.variable.ExpressionUtils;
+import com.codeoinigiri.ingameinfo.hud.LineTemplate;
+import com.codeoinigiri.ingameinfo.variable.VariableLookup;
 import com.codeoinigiri.ingameinfo.variable.VariableManager;
-import com.codeoinigiri.ingameinfo.hud.util.FormattingUtils;
 import com.codeoinigiri.ingameinfo.client.edit.HudEditManager;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Font;
@@ -17,11 +17,11 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
 import java.util.List;
-import java.util.Map;
 
 @Mod.EventBusSubscriber(value = Dist.CLIENT, modid = "ingameinfo", bus = Mod.EventBusSubscriber.Bus.MOD)
 public class HudOverlay {
-
+    // 行の組み立てに使い回すバッファ（描画スレッドからのみ使用）
+    private static final StringBuilder LINE_BUFFER = new StringBuilder(256);
 
     @SubscribeEvent
     public static void registerGuiOverlays(RegisterGuiOverlaysEvent event) {
@@ -34,24 +34,23 @@ public class HudOverlay {
             // Begin frame for edit manager (hit test cache)
             HudEditManager.beginFrame(screenWidth, screenHeight, font);
 
-            for (HudContext ctx : HudContextManager.getContexts()) {
-                Map<String, String> vars = VariableManager.getInstance().getResolvedVariables();
+            // ティックごとのスナップショットを一度だけ取得し、すべてのコンテキストで同じ値を使う
+            // 入力が変わった行だけを再評価する
+            VariableLookup vars = VariableManager.getInstance().getSnapshot();
 
+            for (HudContext ctx : HudContextManager.getContexts()) {
                 // Build display lines, skipping variable evaluation for selected line while in TEXT mode
                 java.util.ArrayList<String> displayLines = new java.util.ArrayList<>();
                 boolean textMode = HudEditManager.isTextMode();
                 String selectedCtx = HudEditManager.getSelectedContextName().orElse(null);
                 int selectedLineIdx = HudEditManager.getSelectedLineIndex();
-                for (int i = 0; i < ctx.lines().size(); i++) {
-                    String raw = ctx.lines().get(i);
-                    String s;
+                for (int i = 0; i < ctx.templates().size(); i++) {
+                    LineTemplate template = ctx.templates().get(i);
                     if (textMode && ctx.name().equals(selectedCtx) && i == selectedLineIdx) {
-                        s = raw; // show raw
+                        displayLines.add(template.rawFormatted()); // show raw
                     } else {
-                        s = ExpressionUtils.evaluateEmbedded(raw, vars);
+                        displayLines.add(template.render(LINE_BUFFER, vars, ctx.evaluationMode()));
                     }
-                    s = FormattingUtils.reorderFormattingCodes(s);
-                    displayLines.add(s);
                 }
 
                 // 文字列をComponentに変換（装飾文字をサポート）
@@ -1,30 +1,47 @@
 package com.codeoinigiri.ingameinfo.command;
 
+import com.codeoinigiri.ingameinfo.api.VariableRegistryImpl;
+import com.codeoinigiri.ingameinfo.hud.HudContext;
+import com.codeoinigiri.ingameinfo.hud.HudContextManager;
+import com.codeoinigiri.ingameinfo.variable.CustomVariable;
+import com.codeoinigiri.ingameinfo.variable.ExpressionBenchmark;
+import com.codeoinigiri.ingameinfo.variable.ExpressionDiagnostics;
 import com.codeoinigiri.ingameinfo.variable.ExpressionEvaluator;
+import com.codeoinigiri.ingameinfo.variable.ProviderScheduler;
+import com.codeoinigiri.ingameinfo.variable.VariableCosts;
+import com.codeoinigiri.ingameinfo.variable.VariableIndex;
 import com.codeoinigiri.ingameinfo.variable.VariableManager;
+import com.codeoinigiri.ingameinfo.variable.provider.AsyncVariableProvider;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.network.chat.Component;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class ListVariablesCommand {
+    private static final int DEFAULT_BENCH_ITERATIONS = 10_000;
+    private static final int LIST_PAGE_SIZE = 20;
+    private static final int MAX_SUGGESTIONS = 50;
+
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
         LiteralArgumentBuilder<CommandSourceStack> command = Commands.literal("igi")
             .then(Commands.literal("list")
-                .executes(context -> {
-                    Map<String, String> vars = VariableManager.getInstance().getResolvedVariables();
-                    String varList = vars.entrySet().stream()
-                        .sorted(Map.Entry.comparingByKey())
-                        .map(e -> e.getKey() + " = " + e.getValue())
-                        .collect(Collectors.joining("\n"));
-
-                    context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.vars.header", varList), false);
-                    return 1;
-                })
+                .executes(context -> listVariables(context, "", 1))
+                // StringArgumentType.string() は "*" を受け付けないため、"[prefix] [page]" をまとめて受け取って分割する
+                .then(Commands.argument("query", StringArgumentType.greedyString())
+                    .suggests(ListVariablesCommand::suggestKeys)
+                    .executes(context -> listVariables(context, StringArgumentType.getString(context, "query")))
+                )
             )
             .then(Commands.literal("help")
                 .executes(context -> {
@@ -32,8 +49,193 @@ public class ListVariablesCommand {
                     context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.help", helpText), false);
                     return 1;
                 })
+            )
+            .then(Commands.literal("bench")
+                .executes(context -> runBenchmark(context, DEFAULT_BENCH_ITERATIONS))
+                .then(Commands.argument("iterations", IntegerArgumentType.integer(1, 1_000_000))
+                    .executes(context -> runBenchmark(context, IntegerArgumentType.getInteger(context, "iterations")))
+                )
+            )
+            .then(Commands.literal("errors")
+                .executes(ListVariablesCommand::showErrors)
+            )
+            .then(Commands.literal("scheduler")
+                .executes(ListVariablesCommand::showSchedulerStats)
+            )
+            .then(Commands.literal("async")
+                .executes(ListVariablesCommand::showAsyncProviders)
+            )
+            .then(Commands.literal("suppliers")
+                .executes(ListVariablesCommand::showSuppliers)
+            )
+            .then(Commands.literal("stats")
+                .executes(ListVariablesCommand::showCosts)
+                .then(Commands.literal("reset")
+                    .executes(ListVariablesCommand::resetCosts)
+                )
             );
 
         dispatcher.register(command);
     }
+
+    /**
+     * "[prefix] [page]" を解析して表示
+     * 接頭辞は "player.item" / "player.item." / "player.item.*" のいずれの形式でもよく、数値のみの場合はページ番号とみなす
+     */
+    private static int listVariables(CommandContext<CommandSourceStack> context, String query) {
+        String[] parts = query.trim().split("\\s+");
+        String prefix = parts[0];
+        int page = 1;
+        if (parts.length == 1 && isPageNumber(parts[0])) {
+            prefix = "";
+            page = Integer.parseInt(parts[0]);
+        } else if (parts.length == 2 && isPageNumber(parts[1])) {
+            page = Integer.parseInt(parts[1]);
+        } else if (parts.length > 1) {
+            context.getSource().sendFailure(Component.translatable("ingameinfo.command.vars.usage"));
+            return 0;
+        }
+        return listVariables(context, prefix, page);
+    }
+
+    private static boolean isPageNumber(String text) {
+        if (text.isEmpty() || text.length() > 9) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) return false;
+        }
+        return Integer.parseInt(text) >= 1;
+    }
+
+    /**
+     * 接頭辞に一致する変数を1ページ分表示
+     * 索引からキー順に必要な分だけ取り出すため、変数の総数が多くても全件の並べ替えは行わない
+     */
+    private static int listVariables(CommandContext<CommandSourceStack> context, String prefix, int page) {
+        VariableIndex.Page result = VariableManager.getInstance()
+            .findVariables(prefix, (page - 1) * LIST_PAGE_SIZE, LIST_PAGE_SIZE);
+        String label = prefix.isEmpty() ? "*" : prefix;
+        if (result.total() == 0) {
+            context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.vars.none", label), false);
+            return 0;
+        }
+
+        int pages = (result.total() + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE;
+        String varList = result.entries().stream()
+            .map(e -> e.key() + " = " + e.value())
+            .collect(Collectors.joining("\n"));
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.vars.page",
+            label, page, pages, result.total(), varList), false);
+        return result.entries().size();
+    }
+
+    /**
+     * 入力途中の接頭辞に一致する変数キーを候補として返す（ページ番号の入力中は候補なし）
+     */
+    private static CompletableFuture<Suggestions> suggestKeys(CommandContext<CommandSourceStack> context, SuggestionsBuilder builder) {
+        String partial = builder.getRemaining();
+        if (partial.indexOf(' ') >= 0) return builder.buildFuture();
+        for (String key : VariableManager.getInstance().completeKeys(partial, MAX_SUGGESTIONS)) {
+            builder.suggest(key);
+        }
+        return builder.buildFuture();
+    }
+
+    /**
+     * 読み込み済みコンテキストの式を INTERPRETER / COMPILED の両方式で計測
+     */
+    private static int runBenchmark(CommandContext<CommandSourceStack> context, int iterations) {
+        List<String> lines = HudContextManager.getContexts().stream()
+            .map(HudContext::lines)
+            .flatMap(List::stream)
+            .toList();
+        ExpressionBenchmark.Result result = ExpressionBenchmark.run(lines, VariableManager.getInstance().getSnapshot(), iterations);
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.bench", result.summary()), false);
+        return 1;
+    }
+
+    /**
+     * プロバイダーのスケジューラーの統計を表示（予算や更新間隔の調整用）
+     */
+    private static int showSchedulerStats(CommandContext<CommandSourceStack> context) {
+        ProviderScheduler.Stats stats = VariableManager.getInstance().getSchedulerStats();
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.scheduler", stats.summary()), false);
+        return 1;
+    }
+
+    /**
+     * プロバイダーと Supplier の処理時間（回数・合計・p50/p99・最大）を表示
+     */
+    private static int showCosts(CommandContext<CommandSourceStack> context) {
+        String summary = VariableManager.getInstance().getCostSummary();
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.stats", summary), false);
+        return 1;
+    }
+
+    /**
+     * API 変数の Supplier の状態（正常 / 低速 / 停止中）を表示
+     */
+    private static int showSuppliers(CommandContext<CommandSourceStack> context) {
+        List<CustomVariable.Status> statuses = VariableRegistryImpl.getSupplierStatuses();
+        if (statuses.isEmpty()) {
+            context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.suppliers.none"), false);
+            return 0;
+        }
+
+        String statusList = statuses.stream()
+            .map(s -> String.format("%s: %s, %s, last %.1f us, failures %d%s%s",
+                s.key(),
+                s.health(),
+                s.policy(),
+                s.lastMicros(),
+                s.failures(),
+                s.ticksLeft() > 0 ? ", retry in " + s.ticksLeft() + " ticks" : "",
+                s.lastError() != null ? " (" + s.lastError() + ")" : ""))
+            .collect(Collectors.joining("\n"));
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.suppliers", statuses.size(), statusList), false);
+        return statuses.size();
+    }
+
+    /**
+     * 処理時間の記録を破棄
+     */
+    private static int resetCosts(CommandContext<CommandSourceStack> context) {
+        VariableCosts.reset();
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.stats.reset"), false);
+        return 1;
+    }
+
+    /**
+     * 非同期プロバイダーの値の古さと収集状況を表示
+     */
+    private static int showAsyncProviders(CommandContext<CommandSourceStack> context) {
+        List<AsyncVariableProvider.Status> statuses = VariableManager.getInstance().getAsyncProviderStatuses();
+        String statusList = statuses.stream()
+            .map(s -> String.format("%s: %s, age %s, last %.1f ms, failures %d%s",
+                s.name(),
+                s.refreshing() ? "refreshing" : "idle",
+                s.ageMillis() < 0 ? "-" : s.ageMillis() + " ms",
+                s.lastMillis(),
+                s.failures(),
+                s.lastError() != null ? " (" + s.lastError() + ")" : ""))
+            .collect(Collectors.joining("\n"));
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.async", statuses.size(), statusList), false);
+        return statuses.size();
+    }
+
+    /**
+     * 記録されている式のエラーを表示
+     */
+    private static int showErrors(CommandContext<CommandSourceStack> context) {
+        Map<String, String> errors = ExpressionDiagnostics.getAll();
+        if (errors.isEmpty()) {
+            context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.errors.none"), false);
+            return 1;
+        }
+
+        String errorList = errors.entrySet().stream()
+            .map(e -> "${" + e.getKey() + "}: " + e.getValue())
+            .collect(Collectors.joining("\n"));
+        context.getSource().sendSuccess(() -> Component.translatable("ingameinfo.command.errors", errors.size(), errorList), false);
+        return errors.size();
+    }
 }
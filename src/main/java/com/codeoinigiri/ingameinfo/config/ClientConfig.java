@@ -12,6 +12,8 @@ public class ClientConfig {
     public final ForgeConfigSpec.EnumValue<HudPosition> hudPosition;
     public final ForgeConfigSpec.IntValue hudOffsetX;
     public final ForgeConfigSpec.IntValue hudOffsetY;
+    public final ForgeConfigSpec.IntValue providerTickBudgetMicros;
+    public final ForgeConfigSpec.IntValue apiSupplierBudgetMicros;
 
     static {
         ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
@@ -45,5 +47,21 @@ public class ClientConfig {
                 .defineInRange("hudOffsetY", 10, 0, 1000);
 
         builder.pop();
+
+        builder.push("performance");
+
+        providerTickBudgetMicros = builder.comment("""
+                変数プロバイダーの更新に1ティックあたり使える時間（マイクロ秒）
+                超えた分の更新は次のティックに持ち越されます。0で無制限
+                """)
+                .defineInRange("providerTickBudgetMicros", 1000, 0, 50000);
+
+        apiSupplierBudgetMicros = builder.comment("""
+                他Modが登録した変数（VariableAPI の Supplier）1回の呼び出しに使える時間（マイクロ秒）
+                超過を繰り返す Supplier は別スレッドで評価され、HUD には最後に取得できた値が表示されます
+                """)
+                .defineInRange("apiSupplierBudgetMicros", 2000, 100, 1000000);
+
+        builder.pop();
     }
 }
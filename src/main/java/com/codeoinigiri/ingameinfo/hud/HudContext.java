@@ -1,15 +1,18 @@
 package com.codeoinigiri.ingameinfo.hud;
 
 import com.codeoinigiri.ingameinfo.config.HudPosition;
+import com.codeoinigiri.ingameinfo.variable.EvaluationMode;
 
 import java.util.List;
 
-public record HudContext(String name, HudPosition position, int color, List<String> lines, Align align, float scale,
+public record HudContext(String name, HudPosition position, int color, List<String> lines,
+                         List<LineTemplate> templates, Align align, float scale,
                          boolean shadow, boolean background, int backgroundRgb, double backgroundAlpha,
                          boolean backgroundPerLine,
                          int paddingTop, int paddingBottom, int paddingLeft, int paddingRight,
                          int lineSpacing, int lineSpacingPaddingTop, int lineSpacingPaddingBottom,
-                         int marginTop, int marginBottom, int marginLeft, int marginRight) {
+                         int marginTop, int marginBottom, int marginLeft, int marginRight,
+                         EvaluationMode evaluationMode) {
 
     public enum Align {
         LEFT, CENTER, RIGHT
@@ -227,6 +227,7 @@ public class HudContextIO {
             config.set("padding", 4);
             config.set("line_spacing", 0);
             config.set("margin", 0);
+            config.set("evaluation_mode", "interpreter");
             config.set("text", "New HUD context");
             config.save();
         } catch (Exception e) {
@@ -1,6 +1,8 @@
 package com.codeoinigiri.ingameinfo.hud;
 
 import com.codeoinigiri.ingameinfo.hud.config.HudContextBuilder;
+import com.codeoinigiri.ingameinfo.variable.ExpressionUtils;
+import com.codeoinigiri.ingameinfo.variable.VariableManager;
 import com.electronwill.nightconfig.core.file.CommentedFileConfig;
 import com.electronwill.nightconfig.core.io.WritingMode;
 import com.mojang.logging.LogUtils;
@@ -11,7 +13,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 /**
@@ -36,6 +40,7 @@ public class HudContextManager {
      */
     public static synchronized void loadContexts() {
         contexts.clear();
+        ExpressionUtils.clearCache();
         ensureDirectoryExists();
 
         try (Stream<Path> paths = Files.list(CONTEXT_DIR.toPath())) {
@@ -46,6 +51,24 @@ public class HudContextManager {
         } catch (Exception e) {
             LOGGER.error("Failed to list HUD context files in: {}", CONTEXT_DIR.getAbsolutePath(), e);
         }
+
+        updateVariableDemand();
+    }
+
+    /**
+     * 読み込んだコンテキストが参照する変数キーを VariableManager に伝える
+     * プロバイダーは参照されていないキーの計算を省略する
+     */
+    private static void updateVariableDemand() {
+        Set<String> keys = new HashSet<>();
+        synchronized (contexts) {
+            for (HudContext ctx : contexts) {
+                for (LineTemplate template : ctx.templates()) {
+                    keys.addAll(template.dependencies());
+                }
+            }
+        }
+        VariableManager.getInstance().setContextDemand(keys);
     }
 
     /**
@@ -0,0 +1,172 @@
+package com.codeoinigiri.ingameinfo.hud;
+
+import com.codeoinigiri.ingameinfo.hud.util.FormattingUtils;
+import com.codeoinigiri.ingameinfo.variable.CompiledExpression;
+import com.codeoinigiri.ingameinfo.variable.EvaluationMode;
+import com.codeoinigiri.ingameinfo.variable.ExpressionUtils;
+import com.codeoinigiri.ingameinfo.variable.ExpressionWindows;
+import com.codeoinigiri.ingameinfo.variable.VariableLookup;
+import com.codeoinigiri.ingameinfo.variable.VariableTable;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * コンテキスト読み込み時にコンパイルされたHUDの1行。
+ * Single Responsibility Principle: 1行分のリテラルと式スロットの保持と描画文字列の組み立てのみに責任を持つ
+ *
+ * リテラル部分はフォーマットコードを整形済みで保持し、描画時は
+ * 式スロットの値を StringBuilder に追記するだけで済む。
+ *
+ * 行が参照する変数キーとそのバージョンを覚えておき、どれも変わっていなければ
+ * 前回の描画結果をそのまま返す。描画スレッドからのみ呼ばれる前提。
+ */
+public final class LineTemplate {
+    private static final char SECTION_SIGN = '\u00A7';
+
+    private final String raw;
+    private final String rawFormatted;
+    private final String[] literals;
+    private final CompiledExpression[] slots;
+    // リテラルだけの行は描画結果が変わらないため事前に確定しておく
+    private final String constantText;
+    // リテラル境界にフォーマットコードがまたがる場合は描画後に全体を整形する
+    private final boolean normalizeOnRender;
+    // 行内の式が参照する変数キーと、前回描画時のバージョン
+    private final String[] dependencies;
+    private final int[] dependencySlots;
+    private final long[] seenVersions;
+    // 前回描画時のエポック（VOLATILE なら未確認）
+    private long seenEpoch = VariableLookup.VOLATILE;
+    // 時間窓関数を含む行は変数が変わらなくても、窓関数のサンプル追加（1ティックに一度）で結果が変わる
+    private final boolean stateful;
+    // 前回描画時の窓関数のサンプル番号
+    private long seenWindowGeneration = -1;
+    private String cachedText;
+
+    private LineTemplate(String raw, String[] literals, CompiledExpression[] slots) {
+        this.raw = raw;
+        this.rawFormatted = FormattingUtils.reorderFormattingCodes(raw);
+        this.literals = literals;
+        this.slots = slots;
+
+        boolean danglingCode = false;
+        for (int i = 0; i < literals.length; i++) {
+            String literal = literals[i];
+            if (i < slots.length && !literal.isEmpty() && literal.charAt(literal.length() - 1) == SECTION_SIGN) {
+                danglingCode = true;
+            }
+            literals[i] = FormattingUtils.reorderFormattingCodes(literal);
+        }
+        this.normalizeOnRender = danglingCode;
+        this.constantText = slots.length == 0 ? literals[0] : null;
+
+        Set<String> keys = new LinkedHashSet<>();
+        boolean hasWindow = false;
+        for (CompiledExpression slot : slots) {
+            keys.addAll(slot.getDependencies());
+            hasWindow |= slot.isStateful();
+        }
+        this.stateful = hasWindow;
+        this.dependencies = keys.toArray(new String[0]);
+        this.dependencySlots = new int[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencySlots[i] = VariableTable.getInstance().intern(dependencies[i]);
+        }
+        this.seenVersions = new long[dependencies.length];
+    }
+
+    /**
+     * 行をリテラルと式スロットに分割してコンパイル
+     *
+     * @param raw  設定ファイルの行テキスト
+     * @param mode 式の評価方式
+     * @return コンパイル済みの行
+     */
+    public static LineTemplate compile(String raw, EvaluationMode mode) {
+        ExpressionUtils.precompile(raw, mode);
+        String[] literals = ExpressionUtils.getLiterals(raw);
+        List<CompiledExpression> expressions = ExpressionUtils.getExpressions(raw);
+        return new LineTemplate(raw, literals, expressions.toArray(new CompiledExpression[0]));
+    }
+
+    /**
+     * 式スロットを評価して表示用の文字列を組み立てる
+     * 参照する変数がどれも更新されていなければ前回の結果を返す
+     *
+     * @param buffer 再利用する StringBuilder（内容は上書きされる）
+     * @param vars   変数ルックアップ
+     * @param mode   式の評価方式
+     * @return 表示用の文字列
+     */
+    public String render(StringBuilder buffer, VariableLookup vars, EvaluationMode mode) {
+        if (constantText != null) return constantText;
+        if (!refreshVersions(vars)) return cachedText;
+
+        buffer.setLength(0);
+        boolean normalize = normalizeOnRender;
+        for (int i = 0; i < slots.length; i++) {
+            buffer.append(literals[i]);
+            String value = slots[i].evaluate(vars, mode);
+            if (!normalize && value.indexOf(SECTION_SIGN) >= 0) {
+                // 値にフォーマットコードが含まれる場合のみ全体を整形する
+                normalize = true;
+            }
+            buffer.append(value);
+        }
+        buffer.append(literals[slots.length]);
+
+        String text = buffer.toString();
+        cachedText = normalize ? FormattingUtils.reorderFormattingCodes(text) : text;
+        return cachedText;
+    }
+
+    /**
+     * 依存する変数のバージョンを更新し、再評価が必要かを返す
+     */
+    private boolean refreshVersions(VariableLookup vars) {
+        boolean changed = cachedText == null;
+        if (stateful) {
+            long generation = ExpressionWindows.generation();
+            if (generation != seenWindowGeneration) {
+                seenWindowGeneration = generation;
+                changed = true;
+            }
+        }
+        // エポックが前回と同じならどの値も変わっていないため、依存キーの確認を省略する
+        long epoch = vars.epoch();
+        if (!changed && epoch != VariableLookup.VOLATILE && epoch == seenEpoch) return false;
+        seenEpoch = epoch;
+        for (int i = 0; i < dependencies.length; i++) {
+            long version = vars.version(dependencySlots[i], dependencies[i]);
+            if (version == VariableLookup.VOLATILE || version != seenVersions[i]) {
+                seenVersions[i] = version;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 式を評価しない生の行（フォーマットコード整形済み）
+     */
+    public String rawFormatted() {
+        return rawFormatted;
+    }
+
+    public String raw() {
+        return raw;
+    }
+
+    public List<CompiledExpression> slots() {
+        return List.of(slots);
+    }
+
+    /**
+     * 行内の式が参照する変数キー
+     */
+    public List<String> dependencies() {
+        return List.of(dependencies);
+    }
+}
@@ -2,6 +2,8 @@ package com.codeoinigiri.ingameinfo.hud.config;
 
 import com.codeoinigiri.ingameinfo.config.HudPosition;
 import com.codeoinigiri.ingameinfo.hud.HudContext;
+import com.codeoinigiri.ingameinfo.hud.LineTemplate;
+import com.codeoinigiri.ingameinfo.variable.EvaluationMode;
 import com.electronwill.nightconfig.core.file.CommentedFileConfig;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
@@ -41,6 +43,12 @@ public class HudContextBuilder {
             String textRaw = config.getOrElse("text", "");
             List<String> lines = textRaw.strip().lines().toList();
 
+            // 式の評価方式と、各行のコンパイル（描画時はスロットの評価のみ行う）
+            EvaluationMode evaluationMode = parseEvaluationMode(config.getOrElse("evaluation_mode", "interpreter"));
+            List<LineTemplate> templates = lines.stream()
+                .map(line -> LineTemplate.compile(line, evaluationMode))
+                .toList();
+
             // スタイル設定
             HudContext.Align align = parseAlign(config.getOrElse("align", "left"));
             float scale = config.getOrElse("scale", DEFAULT_SCALE);
@@ -65,11 +73,12 @@ public class HudContextBuilder {
             LOGGER.debug("Built HudContext: {} (position={}, lines={})", name, position, lines.size());
 
             return Optional.of(new HudContext(
-                name, position, color, lines, align, scale, shadow,
+                name, position, color, lines, templates, align, scale, shadow,
                 background, bgColor.rgb, bgColor.alpha, backgroundPerLine,
                 padding.top, padding.bottom, padding.left, padding.right,
                 lineSpacing.spacing, lineSpacing.paddingTop, lineSpacing.paddingBottom,
-                margin.top, margin.bottom, margin.left, margin.right
+                margin.top, margin.bottom, margin.left, margin.right,
+                evaluationMode
             ));
         } catch (Exception e) {
             LOGGER.error("Failed to build HudContext from config: {}", fileName, e);
@@ -101,6 +110,18 @@ public class HudContextBuilder {
         }
     }
 
+    /**
+     * 評価方式設定のパース
+     */
+    private static EvaluationMode parseEvaluationMode(String modeStr) {
+        try {
+            return EvaluationMode.valueOf(modeStr.toUpperCase());
+        } catch (Exception e) {
+            LOGGER.warn("Invalid evaluation_mode '{}', using INTERPRETER", modeStr);
+            return EvaluationMode.INTERPRETER;
+        }
+    }
+
     /**
      * パディング設定のパース
      */
@@ -0,0 +1,210 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * パース済みの式。
+ * ExpressionEvaluator.compile() で一度だけ生成され、毎フレームは評価のみを行う。
+ * エラーは ExpressionDiagnostics に一度だけ記録し、以降はエラー表示用の文字列を返すだけにする。
+ */
+public final class CompiledExpression {
+    private final String source;
+    private final ExpressionNode root;
+    // COMPILED モードで使う (VariableLookup) -> String のハンドル（必要になった時に一度だけ生成）
+    private volatile MethodHandle compiled;
+
+    // 式全体が定数に畳み込まれた場合の結果（評価を省略する）
+    private final String constantText;
+    // 式が参照する変数キー（値が変わった時だけ再評価するための依存関係）
+    private final Set<String> dependencies;
+    // 時間窓関数を含む（変数が変わらなくても結果がティックごとに変わる）
+    private final boolean stateful;
+    // エラー時に表示する文字列（毎回連結しないよう事前に生成）
+    private final String errorText;
+    // 評価時のエラーを記録済みか（次に成功した時に記録を取り消す）
+    private volatile boolean failing;
+
+    CompiledExpression(String source, ExpressionNode root) {
+        this.source = source;
+        this.root = root;
+        this.errorText = "?" + source + "?";
+        this.constantText = root != null && ExpressionOptimizer.isConstant(root)
+                ? root.evalString(key -> null)
+                : null;
+
+        Set<String> deps = new LinkedHashSet<>();
+        if (root != null) ExpressionNode.collectVariables(root, deps);
+        this.dependencies = Set.copyOf(deps);
+
+        List<ExpressionNode.Window> windows = new ArrayList<>();
+        if (root != null) ExpressionNode.collectWindows(root, windows);
+        windows.forEach(ExpressionWindows::register);
+        this.stateful = !windows.isEmpty();
+    }
+
+    /**
+     * パースに失敗した式を表すインスタンスを生成し、エラーを記録する
+     *
+     * @param source  式のソース
+     * @param message 診断メッセージ
+     */
+    static CompiledExpression failed(String source, String message) {
+        ExpressionDiagnostics.report(source, message);
+        return new CompiledExpression(source, null);
+    }
+
+    /**
+     * 現在の変数値で式を評価して文字列として返す
+     *
+     * @param vars 変数マップ
+     * @return 評価結果の文字列
+     */
+    public String evaluate(Map<String, String> vars) {
+        return evaluate(vars::get);
+    }
+
+    /**
+     * 変数ルックアップを使って式を評価する。
+     * 参照された変数だけを解決するため、変数の総数に依存しない。
+     *
+     * @param vars 変数ルックアップ
+     * @return 評価結果の文字列
+     */
+    public String evaluate(VariableLookup vars) {
+        if (constantText != null) return constantText;
+        if (root == null) return errorText;
+        try {
+            return succeed(root.evalString(vars));
+        } catch (RuntimeException e) {
+            return fail(e);
+        }
+    }
+
+    /**
+     * 指定した評価方式で式を評価する
+     *
+     * @param vars 変数ルックアップ
+     * @param mode 評価方式
+     * @return 評価結果の文字列
+     */
+    public String evaluate(VariableLookup vars, EvaluationMode mode) {
+        if (mode != EvaluationMode.COMPILED || root == null || constantText != null) return evaluate(vars);
+        MethodHandle handle = compiled;
+        if (handle == null) handle = compile();
+        try {
+            return succeed((String) handle.invokeExact(vars));
+        } catch (RuntimeException e) {
+            return fail(e);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Compiled expression failed: " + source, t);
+        }
+    }
+
+    /**
+     * 型付きの評価結果の受け取り先
+     */
+    public interface ResultSink {
+        void number(double value);
+
+        void bool(boolean value);
+
+        void text(String value);
+    }
+
+    /**
+     * 式を評価し、数値と真偽値は文字列に整形せずにそのまま渡す（派生変数の書き込み用）
+     * 評価に失敗した場合は何も渡さず、エラーは他の評価と同じく ExpressionDiagnostics に記録する
+     *
+     * @param vars 変数ルックアップ
+     * @param sink 結果の受け取り先
+     * @return 結果を渡した場合 true
+     */
+    public boolean evaluateTyped(VariableLookup vars, ResultSink sink) {
+        if (root == null) return false;
+        try {
+            switch (root.type()) {
+                case NUMBER -> sink.number(root.evalNumber(vars));
+                case BOOLEAN -> sink.bool(root.evalBoolean(vars));
+                default -> {
+                    // 変数をそのまま参照する式は、数値として保持されていれば数値のまま渡す
+                    if (root instanceof ExpressionNode.Variable v && vars.isNumber(v.slot(), v.key())) {
+                        sink.number(vars.getNumber(v.slot(), v.key()));
+                    } else {
+                        sink.text(root.evalString(vars));
+                    }
+                }
+            }
+            succeed(null);
+            return true;
+        } catch (RuntimeException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    /**
+     * MethodHandle へのコンパイルを行う（コンテキスト読み込み時に呼ばれる）
+     */
+    MethodHandle compile() {
+        MethodHandle handle = compiled;
+        if (handle == null && root != null) {
+            handle = ExpressionCompiler.compile(root);
+            compiled = handle;
+        }
+        return handle;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isValid() {
+        return root != null;
+    }
+
+    /**
+     * 式が参照する変数キー
+     */
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * 時間窓関数を含み、変数の更新とは無関係に結果が変わる式か
+     */
+    public boolean isStateful() {
+        return stateful;
+    }
+
+    /**
+     * 変数に依存しない定数式か
+     */
+    public boolean isConstant() {
+        return constantText != null;
+    }
+
+    private String fail(RuntimeException e) {
+        failing = true;
+        ExpressionDiagnostics.report(source, e.getMessage());
+        return errorText;
+    }
+
+    /**
+     * 評価に成功した結果を返す。以前の評価が失敗していれば記録を取り消す
+     * （未登録だった変数が後から現れた場合など、エラーが残り続けないように）
+     */
+    private String succeed(String result) {
+        if (failing) {
+            failing = false;
+            ExpressionDiagnostics.resolve(source);
+        }
+        return result;
+    }
+}
@@ -1,41 +1,596 @@
 package com.codeoinigiri.ingameinfo.variable;
 
+import com.codeoinigiri.ingameinfo.api.RefreshPolicy;
 import com.mojang.logging.LogUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
  * A container for custom variables provided through the API.
- * It can hold either a static string value or a dynamic supplier.
+ * It can hold either a static value or a dynamic supplier.
+ * The version changes whenever the value changes so that cached HUD lines
+ * can tell when a value has changed.
+ * Every supplier call is timed and recorded in VariableCosts.
+ * Supplier results are cached and only re-invoked when the RefreshPolicy says so;
+ * the version of a cached supplier changes only when a refresh returns a different value.
+ *
+ * Suppliers are invoked without holding this object's monitor, so a slow supplier never blocks
+ * readers such as the snapshot publication; concurrent reads reuse the result of the running call.
+ * Suppliers are guarded so that a third-party supplier cannot stall the client thread:
+ * a supplier that repeatedly exceeds the time budget is moved to an off-thread lane,
+ * and one that keeps throwing is quarantined for a growing number of ticks.
+ * In both cases the last good value keeps being shown, and failures are logged at a limited rate.
+ *
+ * Static values registered through VariableAPI.register live directly in a VariableTable slot,
+ * so that a VariableHandle can update them without hashing or allocating.
+ * A registration stays active until it is unregistered or replaced; writes after that are ignored.
+ *
+ * Typed suppliers (double, long, boolean) are slot-backed as well: each refresh writes the primitive
+ * result into the slot, so expressions read it as a number and it is only formatted when displayed.
+ * Typed suppliers are sampled at most once per tick, even with {@code RefreshPolicy.everyRead()}.
  */
-public record CustomVariable(String key, String staticValue, Supplier<String> supplier) {
+public final class CustomVariable {
     private static final Logger LOGGER = LogUtils.getLogger();
+    // Consecutive over-budget calls before a supplier is moved off the client thread
+    private static final int SLOW_LIMIT = 3;
+    // Consecutive in-budget off-thread calls before a supplier returns to the client thread
+    private static final int RECOVER_LIMIT = 20;
+    // Consecutive failures before a supplier is quarantined
+    private static final int FAILURE_LIMIT = 3;
+    private static final long INITIAL_QUARANTINE_TICKS = 20L * 30;
+    private static final long MAX_QUARANTINE_TICKS = 20L * 60 * 10;
+    private static final long WARN_INTERVAL_NANOS = 60_000_000_000L;
+    private static final ExecutorService SLOW_LANE = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
 
-    public String getValue() {
-        if (supplier != null) {
-            try {
-                String value = supplier.get();
-                return value != null ? value : "";
-            } catch (Exception e) {
-                LOGGER.error("Error evaluating supplier for key: {}", key, e);
-                return "ERROR";
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "IngameInfo-Supplier-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    /**
+     * Health of a supplier
+     */
+    public enum Health {
+        /** Evaluated on the client thread within the budget */
+        HEALTHY,
+        /** Repeatedly over budget; evaluated on the off-thread lane */
+        SLOW,
+        /** Repeatedly throwing; not evaluated until the quarantine ends */
+        QUARANTINED
+    }
+
+    /**
+     * Snapshot of a supplier's state for the debug command
+     *
+     * @param key           variable key
+     * @param health        current health
+     * @param policy        refresh policy
+     * @param lastMicros    duration of the last call in microseconds
+     * @param failures      total number of failed calls
+     * @param ticksLeft     remaining quarantine ticks, 0 if not quarantined
+     * @param lastError     last error, or null
+     */
+    public record Status(String key, Health health, RefreshPolicy policy, double lastMicros,
+                         long failures, long ticksLeft, String lastError) {}
+
+    /**
+     * Result of an off-thread call waiting to be applied on the client thread
+     */
+    private record Completed(String value, double number, long integer, Exception failure, long elapsedNanos) {}
+
+    /**
+     * A double or boolean supplier adapted to a single primitive shape, so that calls do not box.
+     * Long suppliers are kept as they are, because a double cannot hold every long exactly.
+     */
+    @FunctionalInterface
+    private interface NumberSource {
+        double sample();
+    }
+
+    private final String key;
+    private final Supplier<String> supplier;
+    // Typed double or boolean supplier, or null; its results are written to the slot as {@link #type}
+    private final NumberSource numberSource;
+    // Typed long supplier, or null; its results are written to the slot exactly
+    private final LongSupplier longSource;
+    private final byte type;
+    private final RefreshPolicy policy;
+    // VariableTable slot holding the value of a static or typed registration, or -1
+    private final int slot;
+    private volatile boolean active = true;
+    // Cached supplier state, guarded by this
+    private String cachedValue;
+    // Whether a call has ever succeeded; until then failures show "ERROR"
+    private boolean sampled;
+    private long cachedTick = -1;
+    private boolean invalidated;
+    private long version;
+    // Supplier health, written under this; volatile so that isVolatile() does not need the monitor
+    private volatile Health health = Health.HEALTHY;
+    private int consecutiveSlow;
+    private int consecutiveFast;
+    private int consecutiveFailures;
+    private long totalFailures;
+    private long quarantineUntilTick;
+    private long quarantineTicks = INITIAL_QUARANTINE_TICKS;
+    private long lastDurationNanos;
+    private String lastError;
+    private long lastWarnNanos;
+    private int suppressedWarnings;
+    // Whether a call is running on a caller's thread, guarded by this
+    private boolean calling;
+    // Off-thread lane state
+    private volatile boolean inFlight;
+    private volatile Completed completed;
+
+    private CustomVariable(String key, Supplier<String> supplier, NumberSource numberSource, LongSupplier longSource,
+                           byte type, RefreshPolicy policy, int slot, long version) {
+        this.key = key;
+        this.supplier = supplier;
+        this.numberSource = numberSource;
+        this.longSource = longSource;
+        this.type = type;
+        this.policy = policy;
+        this.slot = slot;
+        this.version = version;
+    }
+
+    public static CustomVariable ofSupplier(String key, Supplier<String> supplier, RefreshPolicy policy, long version) {
+        return new CustomVariable(key, supplier, null, null, VariableTable.TYPE_STRING, policy, -1, version);
+    }
+
+    /**
+     * Creates a static registration whose value lives in a VariableTable slot.
+     * The slot is released by {@link #release()}.
+     */
+    public static CustomVariable ofSlot(String key, int slot) {
+        return new CustomVariable(key, null, null, null, VariableTable.TYPE_NONE, null, slot, 0);
+    }
+
+    /**
+     * Creates a registration whose double results are written to a VariableTable slot.
+     */
+    public static CustomVariable ofDouble(String key, int slot, DoubleSupplier supplier, RefreshPolicy policy) {
+        return new CustomVariable(key, null, supplier::getAsDouble, null, VariableTable.TYPE_DOUBLE, policy, slot, 0);
+    }
+
+    /**
+     * Creates a registration whose long results are written to a VariableTable slot.
+     * Values are stored exactly, so that they are displayed without rounding even beyond 2^53.
+     */
+    public static CustomVariable ofLong(String key, int slot, LongSupplier supplier, RefreshPolicy policy) {
+        return new CustomVariable(key, null, null, supplier, VariableTable.TYPE_LONG, policy, slot, 0);
+    }
+
+    /**
+     * Creates a registration whose boolean results are written to a VariableTable slot.
+     */
+    public static CustomVariable ofBoolean(String key, int slot, BooleanSupplier supplier, RefreshPolicy policy) {
+        return new CustomVariable(key, null, () -> supplier.getAsBoolean() ? 1 : 0, null,
+                VariableTable.TYPE_BOOLEAN, policy, slot, 0);
+    }
+
+    /**
+     * @return the VariableTable slot of a slot-backed registration, or -1
+     */
+    public int slot() {
+        return slot;
+    }
+
+    public boolean isSlotBacked() {
+        return slot >= 0;
+    }
+
+    /**
+     * @return false once the registration has been unregistered or replaced
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Writes a value into the slot of an active slot-backed registration.
+     *
+     * @return false if the registration is no longer active
+     */
+    public synchronized boolean write(String value) {
+        if (!active || slot < 0) return false;
+        VariableTable.getInstance().set(slot, value != null ? value : "");
+        return true;
+    }
+
+    public synchronized boolean write(double value) {
+        if (!active || slot < 0) return false;
+        VariableTable.getInstance().set(slot, value);
+        return true;
+    }
+
+    public synchronized boolean write(long value) {
+        if (!active || slot < 0) return false;
+        VariableTable.getInstance().set(slot, value);
+        return true;
+    }
+
+    public synchronized boolean write(boolean value) {
+        if (!active || slot < 0) return false;
+        VariableTable.getInstance().set(slot, value);
+        return true;
+    }
+
+    /**
+     * Marks the slot as owned by the API so that provider cleanup does not clear it.
+     * Called once the registration has replaced any previous one for the same key.
+     */
+    public synchronized void claim() {
+        if (active && slot >= 0) {
+            VariableTable.getInstance().setExternal(slot, true);
+        }
+    }
+
+    /**
+     * Deactivates the registration and clears its slot, so that handles stop writing
+     * and the value disappears from the HUD.
+     */
+    public synchronized void release() {
+        if (!active) return;
+        active = false;
+        if (slot >= 0) {
+            VariableTable table = VariableTable.getInstance();
+            table.setExternal(slot, false);
+            table.set(slot, (String) null);
+        }
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public Supplier<String> supplier() {
+        return supplier;
+    }
+
+    /**
+     * @return the refresh policy, or null for static variables
+     */
+    public RefreshPolicy policy() {
+        return policy;
+    }
+
+    public synchronized long version() {
+        return slot >= 0 ? VariableTable.getInstance().version(slot) : version;
+    }
+
+    /**
+     * Returns the current value for an explicit read (VariableAPI.get, commands).
+     * A supplier whose policy says the cached value is due is refreshed here, at most once per tick,
+     * so that variables the tick skips because nothing displays them still return a current value.
+     * Suppliers that are not healthy return their last good value.
+     *
+     * @param tick        the current client tick
+     * @param budgetNanos time budget for a single supplier call
+     */
+    public String getValue(long tick, long budgetNanos) {
+        if (isDynamic()) {
+            if (isVolatile()) {
+                if (begin(tick)) call(tick, budgetNanos);
+            } else {
+                refresh(tick, budgetNanos, true);
             }
         }
-        return staticValue != null ? staticValue : "";
+        return currentValue();
+    }
+
+    /**
+     * Returns the cached value for the per-tick snapshot without refreshing a due supplier,
+     * so that suppliers nothing displays stay off the per-tick path.
+     * Only everyRead suppliers, which are invoked on every read by definition,
+     * and suppliers that have never been invoked are called here.
+     *
+     * @param tick        the current client tick
+     * @param budgetNanos time budget for a single supplier call
+     */
+    public String cachedValue(long tick, long budgetNanos) {
+        if (isDynamic()) {
+            boolean call;
+            synchronized (this) {
+                call = health == Health.HEALTHY && (isVolatile() || cachedTick < 0) && begin(tick);
+            }
+            if (call) call(tick, budgetNanos);
+        }
+        return currentValue();
+    }
+
+    private String currentValue() {
+        if (slot >= 0) {
+            String value = VariableTable.getInstance().get(slot);
+            return value != null ? value : "";
+        }
+        synchronized (this) {
+            return cachedValue != null ? cachedValue : "";
+        }
+    }
+
+    /**
+     * Applies a finished off-thread call and re-invokes the supplier if its policy says the cached value is due.
+     *
+     * @param tick        the current client tick
+     * @param budgetNanos time budget for a single supplier call
+     * @return true if the value changed
+     */
+    public boolean refreshIfDue(long tick, long budgetNanos) {
+        return refresh(tick, budgetNanos, false);
+    }
+
+    /**
+     * Decides under the monitor whether the supplier is due, then invokes it without holding the monitor.
+     *
+     * @param onRead true when called from a read, which refreshes at most once per tick
+     */
+    private boolean refresh(long tick, long budgetNanos, boolean onRead) {
+        boolean changed;
+        synchronized (this) {
+            if (!isDynamic()) return false;
+            if (onRead && cachedTick == tick) return false;
+            changed = applyCompleted(tick, budgetNanos);
+
+            if (health == Health.QUARANTINED) {
+                if (tick < quarantineUntilTick) return changed;
+                // Retry off the client thread first; it returns to the client thread once it behaves
+                health = Health.SLOW;
+                consecutiveFast = 0;
+                LOGGER.info("Supplier for '{}' released from quarantine", key);
+            }
+            if (isVolatile()) return changed;
+            if (!policy.isDue(cachedTick, tick, invalidated)) return changed;
+
+            if (health == Health.SLOW) {
+                submit(tick);
+                return changed;
+            }
+            if (!begin(tick)) return changed;
+        }
+        return call(tick, budgetNanos) || changed;
+    }
+
+    /**
+     * Marks the cached value as stale so that it is re-invoked on the next tick.
+     */
+    public synchronized void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * Claims the next call on the calling thread.
+     *
+     * @return false if a call is already running, in which case its result will be used
+     */
+    private synchronized boolean begin(long tick) {
+        if (calling) return false;
+        calling = true;
+        cachedTick = tick;
+        invalidated = false;
+        return true;
+    }
+
+    /**
+     * Invokes the supplier on the calling thread without holding the monitor, so that a slow supplier
+     * does not block readers, then records the outcome. Must be preceded by a successful {@link #begin(long)}.
+     */
+    private boolean call(long tick, long budgetNanos) {
+        Completed result = null;
+        boolean changed = false;
+        try {
+            result = sample();
+        } finally {
+            // Even if the supplier threw an error, later calls must not stay blocked
+            synchronized (this) {
+                calling = false;
+                if (result != null) changed = record(result, tick, budgetNanos, false);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Invokes the supplier once and times it.
+     */
+    private Completed sample() {
+        long start = System.nanoTime();
+        String value = null;
+        double number = 0;
+        long integer = 0;
+        Exception failure = null;
+        try {
+            if (numberSource != null) {
+                number = numberSource.sample();
+            } else if (longSource != null) {
+                integer = longSource.getAsLong();
+            } else {
+                value = supplier.get();
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+        return new Completed(value, number, integer, failure, System.nanoTime() - start);
+    }
+
+    /**
+     * Starts an off-thread call unless one is still running.
+     */
+    private void submit(long tick) {
+        if (inFlight) return;
+        inFlight = true;
+        cachedTick = tick;
+        invalidated = false;
+        try {
+            SLOW_LANE.execute(() -> {
+                try {
+                    completed = sample();
+                } finally {
+                    // Errors other than exceptions must not leave the lane blocked
+                    inFlight = false;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight = false;
+        }
+    }
+
+    private boolean applyCompleted(long tick, long budgetNanos) {
+        Completed result = completed;
+        if (result == null) return false;
+        completed = null;
+        return record(result, tick, budgetNanos, true);
+    }
+
+    /**
+     * Updates the cached value and the supplier's health from one call.
+     *
+     * @return true if the cached value changed
+     */
+    private boolean record(Completed result, long tick, long budgetNanos, boolean offThread) {
+        long elapsedNanos = result.elapsedNanos();
+        Exception failure = result.failure();
+        VariableCosts.recordSupplier(key, elapsedNanos);
+        lastDurationNanos = elapsedNanos;
+
+        if (failure != null) {
+            onFailure(failure, tick);
+            // Keep the last good value; only show an error if there never was one
+            return !sampled && store("ERROR");
+        }
+
+        consecutiveFailures = 0;
+        lastError = null;
+        if (elapsedNanos > budgetNanos) {
+            consecutiveFast = 0;
+            if (++consecutiveSlow >= SLOW_LIMIT && health == Health.HEALTHY) {
+                health = Health.SLOW;
+                LOGGER.warn("Supplier for '{}' exceeded its time budget {} times in a row ({} us); evaluating it off-thread",
+                        key, consecutiveSlow, elapsedNanos / 1000);
+            }
+        } else {
+            consecutiveSlow = 0;
+            if (offThread && health == Health.SLOW && ++consecutiveFast >= RECOVER_LIMIT) {
+                health = Health.HEALTHY;
+                quarantineTicks = INITIAL_QUARANTINE_TICKS;
+                LOGGER.info("Supplier for '{}' is back within its time budget", key);
+            }
+        }
+        sampled = true;
+        return supplier == null ? storeNumber(result) : store(result.value() != null ? result.value() : "");
+    }
+
+    private void onFailure(Exception e, long tick) {
+        consecutiveFailures++;
+        totalFailures++;
+        lastError = e.toString();
+        logFailure(e);
+
+        if (consecutiveFailures >= FAILURE_LIMIT) {
+            health = Health.QUARANTINED;
+            quarantineUntilTick = tick + quarantineTicks;
+            LOGGER.warn("Supplier for '{}' failed {} times in a row; disabled for {} ticks",
+                    key, consecutiveFailures, quarantineTicks);
+            quarantineTicks = Math.min(quarantineTicks * 2, MAX_QUARANTINE_TICKS);
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Logs the first failure with its stack trace, then at most one summary per interval.
+     */
+    private void logFailure(Exception e) {
+        long now = System.nanoTime();
+        if (totalFailures == 1) {
+            lastWarnNanos = now;
+            LOGGER.error("Error evaluating supplier for key: {}", key, e);
+        } else if (now - lastWarnNanos >= WARN_INTERVAL_NANOS) {
+            LOGGER.warn("Supplier for '{}' is still failing ({} more failures): {}", key, suppressedWarnings + 1, e.toString());
+            lastWarnNanos = now;
+            suppressedWarnings = 0;
+        } else {
+            suppressedWarnings++;
+        }
+    }
+
+    private boolean store(String value) {
+        if (slot >= 0) {
+            return active && VariableTable.getInstance().set(slot, value);
+        }
+        if (Objects.equals(value, cachedValue)) return false;
+        cachedValue = value;
+        version = VariableTable.getInstance().nextVersion();
+        return true;
+    }
+
+    /**
+     * Writes a typed result to the slot without formatting it.
+     */
+    private boolean storeNumber(Completed result) {
+        if (!active) return false;
+        VariableTable table = VariableTable.getInstance();
+        return switch (type) {
+            case VariableTable.TYPE_LONG -> table.set(slot, result.integer());
+            case VariableTable.TYPE_BOOLEAN -> table.set(slot, result.number() != 0);
+            default -> table.set(slot, result.number());
+        };
     }
 
     public boolean isDynamic() {
-        return supplier != null;
+        return supplier != null || numberSource != null || longSource != null;
+    }
+
+    /**
+     * @return true if the supplier is invoked on every read, so its changes cannot be tracked.
+     *         Unhealthy suppliers serve their cached value and are therefore never volatile.
+     *         Typed suppliers write to their slot on refresh, so they are never volatile either.
+     */
+    public boolean isVolatile() {
+        return supplier != null && policy.isEveryRead() && health == Health.HEALTHY;
+    }
+
+    /**
+     * @param tick the current client tick
+     * @return the supplier's current state, or null for static variables
+     */
+    public synchronized Status getStatus(long tick) {
+        if (!isDynamic()) return null;
+        long ticksLeft = health == Health.QUARANTINED ? Math.max(0, quarantineUntilTick - tick) : 0;
+        return new Status(key, health, policy, lastDurationNanos / 1000.0, totalFailures, ticksLeft, lastError);
     }
 
     @Override
     public @NotNull String toString() {
+        String value;
+        synchronized (this) {
+            if (slot >= 0) {
+                value = VariableTable.getInstance().get(slot);
+            } else {
+                value = cachedValue;
+            }
+        }
         return "CustomVariable{"
                 + "key='" + key + "'" +
                 ", dynamic=" + isDynamic() +
-                ", value='" + getValue() + "'" +
+                (policy != null ? ", policy=" + policy : "") +
+                ", value='" + value + "'" +
                 '}';
     }
 }
@@ -0,0 +1,11 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+/**
+ * HUDコンテキストの式の評価方式
+ */
+public enum EvaluationMode {
+    /** 構文木をそのまま評価する（デフォルト） */
+    INTERPRETER,
+    /** 読み込み時に MethodHandle の連鎖へコンパイルして評価する */
+    COMPILED
+}
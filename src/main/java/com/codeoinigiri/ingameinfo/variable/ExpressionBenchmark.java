@@ -0,0 +1,83 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * INTERPRETER と COMPILED の評価方式を同じ式で比較する簡易ベンチマーク。
+ * Single Responsibility Principle: 評価コストの計測のみに責任を持つ
+ * /igi bench から呼ばれる。
+ */
+public final class ExpressionBenchmark {
+    // 計測中の評価結果の書き出し先（JIT に評価を省略させないため volatile）
+    @SuppressWarnings("unused")
+    private static volatile int blackhole;
+
+    private ExpressionBenchmark() {
+        // ユーティリティクラスのため、インスタンス化を防止
+    }
+
+    /**
+     * 計測結果
+     *
+     * @param expressions    計測した式の数
+     * @param iterations     式ごとの評価回数
+     * @param interpreterNs  INTERPRETER での1評価あたりの平均ナノ秒
+     * @param compiledNs     COMPILED での1評価あたりの平均ナノ秒
+     */
+    public record Result(int expressions, int iterations, double interpreterNs, double compiledNs) {
+        public String summary() {
+            if (expressions == 0) return "No expressions to benchmark";
+            return String.format("Expressions: %d, iterations: %d%n" +
+                            "Interpreter: %.1f ns/eval%n" +
+                            "Compiled: %.1f ns/eval (x%.2f)",
+                    expressions, iterations, interpreterNs, compiledNs,
+                    compiledNs > 0 ? interpreterNs / compiledNs : 0);
+        }
+    }
+
+    /**
+     * 行に含まれるすべての式を両方式で評価して計測
+     *
+     * @param lines      計測対象の行（${...} を含む HUD の行）
+     * @param vars       変数ルックアップ
+     * @param iterations 式ごとの評価回数
+     * @return 計測結果
+     */
+    public static Result run(Collection<String> lines, VariableLookup vars, int iterations) {
+        List<CompiledExpression> expressions = new ArrayList<>();
+        for (String line : lines) {
+            for (CompiledExpression expr : ExpressionUtils.getExpressions(line)) {
+                if (expr.isValid()) expressions.add(expr);
+            }
+        }
+        if (expressions.isEmpty()) return new Result(0, iterations, 0, 0);
+        expressions.forEach(CompiledExpression::compile);
+
+        // ウォームアップ（JIT に両方式を最適化させる）
+        measure(expressions, vars, EvaluationMode.INTERPRETER, iterations);
+        measure(expressions, vars, EvaluationMode.COMPILED, iterations);
+
+        long interpreter = measure(expressions, vars, EvaluationMode.INTERPRETER, iterations);
+        long compiled = measure(expressions, vars, EvaluationMode.COMPILED, iterations);
+
+        double evaluations = (double) expressions.size() * iterations;
+        return new Result(expressions.size(), iterations, interpreter / evaluations, compiled / evaluations);
+    }
+
+    private static long measure(List<CompiledExpression> expressions, VariableLookup vars,
+                                EvaluationMode mode, int iterations) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (CompiledExpression expr : expressions) {
+                sink += expr.evaluate(vars, mode).length();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        // 結果を書き出して評価がデッドコードとして除去されないようにする
+        blackhole = sink;
+        return elapsed;
+    }
+}
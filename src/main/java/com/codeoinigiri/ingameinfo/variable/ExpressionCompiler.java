@@ -0,0 +1,214 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 構文木を MethodHandle の連鎖に変換するコンパイラ。
+ * Single Responsibility Principle: 構文木から実行可能なハンドルを組み立てることのみに責任を持つ
+ *
+ * 生成したハンドルは (VariableLookup) -> String 型で、ノードごとの仮想呼び出しや
+ * switch を含まないため、頻繁に呼ばれると JIT が手書きのコードと同様にインライン化できる。
+ * 対応していないノードはインタプリタの評価メソッドにフォールバックする。
+ */
+final class ExpressionCompiler {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle NODE_NUMBER;
+    private static final MethodHandle NODE_BOOLEAN;
+    private static final MethodHandle NODE_STRING;
+    private static final MethodHandle VALUE_EQUALS;
+    private static final MethodHandle FORMAT_NUMBER;
+    private static final MethodHandle FORMAT_PATTERN;
+    private static final MethodHandle PATTERN_FORMAT;
+    private static final MethodHandle APPLY1;
+    private static final MethodHandle APPLY2;
+    private static final MethodHandle ADD, SUB, MUL, DIV, NEG;
+    private static final MethodHandle LT, LE, GT, GE, NOT;
+    private static final MethodHandle NON_ZERO, BOOLEAN_TO_NUMBER, BOOLEAN_TO_STRING;
+
+    static {
+        try {
+            MethodType number = MethodType.methodType(double.class, VariableLookup.class);
+            MethodType bool = MethodType.methodType(boolean.class, VariableLookup.class);
+            MethodType string = MethodType.methodType(String.class, VariableLookup.class);
+            NODE_NUMBER = LOOKUP.findVirtual(ExpressionNode.class, "evalNumber", number);
+            NODE_BOOLEAN = LOOKUP.findVirtual(ExpressionNode.class, "evalBoolean", bool);
+            NODE_STRING = LOOKUP.findVirtual(ExpressionNode.class, "evalString", string);
+            VALUE_EQUALS = LOOKUP.findStatic(ExpressionNode.class, "valueEquals",
+                    MethodType.methodType(boolean.class, ExpressionNode.class, ExpressionNode.class, VariableLookup.class));
+            FORMAT_NUMBER = LOOKUP.findStatic(ExpressionNode.class, "formatNumber",
+                    MethodType.methodType(String.class, double.class));
+            FORMAT_PATTERN = LOOKUP.findStatic(ExpressionNode.class, "formatPattern",
+                    MethodType.methodType(String.class, double.class, String.class));
+            PATTERN_FORMAT = LOOKUP.findVirtual(ExpressionNode.PatternFormat.class, "format",
+                    MethodType.methodType(String.class, double.class));
+            APPLY1 = LOOKUP.findVirtual(DoubleUnaryOperator.class, "applyAsDouble",
+                    MethodType.methodType(double.class, double.class));
+            APPLY2 = LOOKUP.findVirtual(DoubleBinaryOperator.class, "applyAsDouble",
+                    MethodType.methodType(double.class, double.class, double.class));
+
+            MethodType arithmetic = MethodType.methodType(double.class, double.class, double.class);
+            ADD = LOOKUP.findStatic(ExpressionCompiler.class, "add", arithmetic);
+            SUB = LOOKUP.findStatic(ExpressionCompiler.class, "sub", arithmetic);
+            MUL = LOOKUP.findStatic(ExpressionCompiler.class, "mul", arithmetic);
+            DIV = LOOKUP.findStatic(ExpressionCompiler.class, "div", arithmetic);
+            NEG = LOOKUP.findStatic(ExpressionCompiler.class, "neg", MethodType.methodType(double.class, double.class));
+
+            MethodType compare = MethodType.methodType(boolean.class, double.class, double.class);
+            LT = LOOKUP.findStatic(ExpressionCompiler.class, "lt", compare);
+            LE = LOOKUP.findStatic(ExpressionCompiler.class, "le", compare);
+            GT = LOOKUP.findStatic(ExpressionCompiler.class, "gt", compare);
+            GE = LOOKUP.findStatic(ExpressionCompiler.class, "ge", compare);
+            NOT = LOOKUP.findStatic(ExpressionCompiler.class, "not", MethodType.methodType(boolean.class, boolean.class));
+
+            NON_ZERO = LOOKUP.findStatic(ExpressionCompiler.class, "nonZero",
+                    MethodType.methodType(boolean.class, double.class));
+            BOOLEAN_TO_NUMBER = LOOKUP.findStatic(ExpressionCompiler.class, "booleanToNumber",
+                    MethodType.methodType(double.class, boolean.class));
+            BOOLEAN_TO_STRING = LOOKUP.findStatic(ExpressionCompiler.class, "booleanToString",
+                    MethodType.methodType(String.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ExpressionCompiler() {
+        // ユーティリティクラスのため、インスタンス化を防止
+    }
+
+    /**
+     * 構文木を (VariableLookup) -> String のハンドルに変換
+     * 変換に失敗した場合はインタプリタ評価のハンドルを返す
+     */
+    static MethodHandle compile(ExpressionNode root) {
+        try {
+            return string(root);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to compile expression, falling back to interpreter: {}", root, e);
+            return NODE_STRING.bindTo(root);
+        }
+    }
+
+    private static MethodHandle number(ExpressionNode node) {
+        if (node instanceof ExpressionNode.NumberLiteral n) {
+            return constant(double.class, n.value());
+        }
+        if (node instanceof ExpressionNode.Negate n) {
+            return MethodHandles.filterReturnValue(number(n.operand()), NEG);
+        }
+        if (node instanceof ExpressionNode.Arithmetic a) {
+            MethodHandle op = switch (a.op()) {
+                case '+' -> ADD;
+                case '-' -> SUB;
+                case '*' -> MUL;
+                case '/' -> DIV;
+                default -> throw new IllegalStateException("Unknown operator: " + a.op());
+            };
+            return binary(op, number(a.left()), number(a.right()));
+        }
+        if (node instanceof ExpressionNode.Call1 c) {
+            return MethodHandles.filterReturnValue(number(c.arg()), APPLY1.bindTo(c.function()));
+        }
+        if (node instanceof ExpressionNode.Call2 c) {
+            return binary(APPLY2.bindTo(c.function()), number(c.arg1()), number(c.arg2()));
+        }
+        if (node instanceof ExpressionNode.Ternary t) {
+            return MethodHandles.guardWithTest(bool(t.condition()), number(t.whenTrue()), number(t.whenFalse()));
+        }
+        if (node.type() == ExpressionNode.ValueType.BOOLEAN) {
+            return MethodHandles.filterReturnValue(bool(node), BOOLEAN_TO_NUMBER);
+        }
+        return NODE_NUMBER.bindTo(node);
+    }
+
+    private static MethodHandle bool(ExpressionNode node) {
+        if (node instanceof ExpressionNode.BooleanLiteral b) {
+            return constant(boolean.class, b.value());
+        }
+        if (node instanceof ExpressionNode.Comparison c) {
+            MethodHandle op = switch (c.op()) {
+                case "<" -> LT;
+                case "<=" -> LE;
+                case ">" -> GT;
+                case ">=" -> GE;
+                default -> null;
+            };
+            if (op != null) {
+                return binary(op, number(c.left()), number(c.right()));
+            }
+            MethodHandle equals = MethodHandles.insertArguments(VALUE_EQUALS, 0, c.left(), c.right());
+            return c.op().equals("!=") ? MethodHandles.filterReturnValue(equals, NOT) : equals;
+        }
+        if (node instanceof ExpressionNode.Ternary t) {
+            return MethodHandles.guardWithTest(bool(t.condition()), bool(t.whenTrue()), bool(t.whenFalse()));
+        }
+        if (node.type() == ExpressionNode.ValueType.NUMBER) {
+            return MethodHandles.filterReturnValue(number(node), NON_ZERO);
+        }
+        return NODE_BOOLEAN.bindTo(node);
+    }
+
+    private static MethodHandle string(ExpressionNode node) {
+        if (node instanceof ExpressionNode.StringLiteral s) {
+            return constant(String.class, s.value());
+        }
+        if (node instanceof ExpressionNode.Ternary t) {
+            return MethodHandles.guardWithTest(bool(t.condition()), string(t.whenTrue()), string(t.whenFalse()));
+        }
+        if (node instanceof ExpressionNode.Format f) {
+            return binary(FORMAT_PATTERN, number(f.value()), string(f.pattern()));
+        }
+        if (node instanceof ExpressionNode.PatternFormat f) {
+            return MethodHandles.filterReturnValue(number(f.value()), PATTERN_FORMAT.bindTo(f));
+        }
+        if (node.type() == ExpressionNode.ValueType.NUMBER) {
+            return MethodHandles.filterReturnValue(number(node), FORMAT_NUMBER);
+        }
+        if (node.type() == ExpressionNode.ValueType.BOOLEAN) {
+            return MethodHandles.filterReturnValue(bool(node), BOOLEAN_TO_STRING);
+        }
+        return NODE_STRING.bindTo(node);
+    }
+
+    /**
+     * (A, B) -> R の演算と、(VariableLookup) -> A / B の2つのハンドルを
+     * (VariableLookup) -> R の1つのハンドルに結合する
+     */
+    private static MethodHandle binary(MethodHandle op, MethodHandle left, MethodHandle right) {
+        MethodHandle combined = MethodHandles.filterArguments(op, 0, left, right);
+        MethodType type = MethodType.methodType(op.type().returnType(), VariableLookup.class);
+        return MethodHandles.permuteArguments(combined, type, 0, 0);
+    }
+
+    private static MethodHandle constant(Class<?> type, Object value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, VariableLookup.class);
+    }
+
+    // ===============================
+    // ハンドルの末端となるプリミティブ演算
+    // ===============================
+
+    private static double add(double a, double b) { return a + b; }
+    private static double sub(double a, double b) { return a - b; }
+    private static double mul(double a, double b) { return a * b; }
+    private static double div(double a, double b) { return a / b; }
+    private static double neg(double a) { return -a; }
+
+    private static boolean lt(double a, double b) { return a < b; }
+    private static boolean le(double a, double b) { return a <= b; }
+    private static boolean gt(double a, double b) { return a > b; }
+    private static boolean ge(double a, double b) { return a >= b; }
+    private static boolean not(boolean a) { return !a; }
+
+    private static boolean nonZero(double a) { return a != 0; }
+    private static double booleanToNumber(boolean b) { return b ? 1 : 0; }
+    private static String booleanToString(boolean b) { return b ? "true" : "false"; }
+}
@@ -0,0 +1,74 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 失敗した式とその診断メッセージの記録。
+ * Single Responsibility Principle: 式のエラーの収集と報告のみに責任を持つ
+ *
+ * 同じ式のエラーはログに一度だけ出力し、以降は記録済みのメッセージを参照するだけにする。
+ * 記録内容は /igi errors で確認できる。
+ * 評価時のエラー（未登録の変数など）は、同じ式が次に評価に成功した時点で記録から取り除く。
+ * パースエラーは再読み込みまで残る。
+ */
+public final class ExpressionDiagnostics {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    // 式のソース → 最初に発生したエラーの内容
+    private static final Map<String, String> ERRORS = new ConcurrentHashMap<>();
+
+    private ExpressionDiagnostics() {
+        // ユーティリティクラスのため、インスタンス化を防止
+    }
+
+    /**
+     * 式のエラーを記録（初回のみログに出力）
+     *
+     * @param source  式のソース
+     * @param message 診断メッセージ
+     */
+    public static void report(String source, String message) {
+        if (ERRORS.containsKey(source)) return;
+        String text = message != null ? message : "Unknown error";
+        if (ERRORS.putIfAbsent(source, text) == null) {
+            LOGGER.warn("Expression error in '{}': {}", source, text);
+        }
+    }
+
+    /**
+     * 式が評価に成功したため、記録されているエラーを取り除く
+     *
+     * @param source 式のソース
+     */
+    public static void resolve(String source) {
+        if (ERRORS.remove(source) != null) {
+            LOGGER.debug("Expression '{}' evaluated successfully; error cleared", source);
+        }
+    }
+
+    /**
+     * 記録されているエラーを式のソース順で取得
+     */
+    public static Map<String, String> getAll() {
+        return Collections.unmodifiableMap(new TreeMap<>(ERRORS));
+    }
+
+    /**
+     * 記録されているエラーの数を取得
+     */
+    public static int size() {
+        return ERRORS.size();
+    }
+
+    /**
+     * 記録を破棄（コンテキスト再読み込み時）
+     */
+    public static void clear() {
+        ERRORS.clear();
+    }
+}
@@ -1,10 +1,10 @@
 package com.codeoinigiri.ingameinfo.variable;
 
-import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * ScriptEngineに依存せず、簡単な数式と条件式を評価する。
@@ -13,9 +13,11 @@ import java.util.function.Function;
  */
 public class ExpressionEvaluator {
     // 1引数の数学関数
-    private static final Map<String, Function<Double, Double>> mathFunctions = new HashMap<>();
+    private static final Map<String, DoubleUnaryOperator> mathFunctions = new HashMap<>();
     // 2引数の数学関数
-    private static final Map<String, BiFunction<Double, Double, Double>> mathFunctions2 = new HashMap<>();
+    private static final Map<String, DoubleBinaryOperator> mathFunctions2 = new HashMap<>();
+    // パース済み式のキャッシュ（ソース文字列 → 構文木）
+    private static final Map<String, CompiledExpression> CACHE = new ConcurrentHashMap<>();
 
     // 静的初期化ブロック: 利用可能な数学関数を登録
     static {
@@ -48,14 +50,35 @@ public class ExpressionEvaluator {
      */
     public static String eval(String expr, Map<String, String> vars) {
         if (expr == null || expr.isEmpty()) return "";
+        return compile(expr).evaluate(vars);
+    }
 
-        expr = substituteVariables(expr, vars);
+    /**
+     * 式をパースして構文木を返す。
+     * 結果はソース文字列をキーにキャッシュされ、同じ式は二度パースしない。
+     *
+     * @param expr パースする式
+     * @return パース済みの式
+     */
+    public static CompiledExpression compile(String expr) {
+        return CACHE.computeIfAbsent(expr, ExpressionEvaluator::parse);
+    }
 
+    /**
+     * パース済み式のキャッシュを破棄（コンテキスト再読み込み時）
+     */
+    public static void clearCache() {
+        CACHE.clear();
+        ExpressionDiagnostics.clear();
+        ExpressionWindows.clear();
+    }
+
+    private static CompiledExpression parse(String expr) {
         try {
-            Object val = new Parser(expr).parseTernary();
-            return val.toString();
-        } catch (Exception e) {
-            return "?" + expr + "?";
+            ExpressionNode root = new Parser(expr).parseTernary();
+            return new CompiledExpression(expr, ExpressionOptimizer.fold(root));
+        } catch (RuntimeException e) {
+            return CompiledExpression.failed(expr, e.getMessage());
         }
     }
 
@@ -65,19 +88,8 @@ public class ExpressionEvaluator {
                 "Ternary: (condition ? value_if_true : value_if_false)\n" +
                 "Functions (1 arg): " + String.join(", ", mathFunctions.keySet()) + "\n" +
                 "Functions (2 arg): " + String.join(", ", mathFunctions2.keySet()) + "\n" +
-                "Special Functions: format(value, \"pattern\")";
-    }
-
-    private static String substituteVariables(String expr, Map<String, String> vars) {
-        for (var e : vars.entrySet()) {
-            String value = e.getValue();
-            if (value.matches("-?\\d+(\\.\\d+)?")) {
-                expr = expr.replaceAll("\\b" + e.getKey() + "\\b", value);
-            } else {
-                expr = expr.replaceAll("\\b" + e.getKey() + "\\b", "\"" + value + "\"");
-            }
-        }
-        return expr;
+                "Special Functions: format(value, \"pattern\")\n" +
+                "Window Functions (value, ticks): delta, rate, avg, wmin, wmax";
     }
 
     private static class Parser {
@@ -102,112 +114,142 @@ public class ExpressionEvaluator {
             return false;
         }
 
-        Object parseTernary() {
-            Object condition = parseComparison();
+        ExpressionNode parseTernary() {
+            ExpressionNode condition = parseComparison();
             if (eat('?')) {
-                Object trueExpr = parseTernary();
+                ExpressionNode trueExpr = parseTernary();
                 eat(':');
-                Object falseExpr = parseTernary();
-                boolean cond = toBoolean(condition);
-                return cond ? trueExpr : falseExpr;
+                ExpressionNode falseExpr = parseTernary();
+                return new ExpressionNode.Ternary(condition, trueExpr, falseExpr);
             }
             return condition;
         }
 
-        Object parseComparison() {
-            Object left = parseExpression();
+        ExpressionNode parseComparison() {
+            ExpressionNode left = parseExpression();
             while (true) {
                 if (eat('<')) {
-                    if (eat('=')) left = (toDouble(left) <= toDouble(parseExpression()));
-                    else left = (toDouble(left) < toDouble(parseExpression()));
+                    if (eat('=')) left = new ExpressionNode.Comparison("<=", left, parseExpression());
+                    else left = new ExpressionNode.Comparison("<", left, parseExpression());
                 } else if (eat('>')) {
-                    if (eat('=')) left = (toDouble(left) >= toDouble(parseExpression()));
-                    else left = (toDouble(left) > toDouble(parseExpression()));
+                    if (eat('=')) left = new ExpressionNode.Comparison(">=", left, parseExpression());
+                    else left = new ExpressionNode.Comparison(">", left, parseExpression());
                 } else if (eat('=')) {
                     eat('=');
-                    left = left.toString().equals(parseExpression().toString());
+                    left = new ExpressionNode.Comparison("==", left, parseExpression());
                 } else if (eat('!')) {
                     eat('=');
-                    left = !left.toString().equals(parseExpression().toString());
+                    left = new ExpressionNode.Comparison("!=", left, parseExpression());
                 } else return left;
             }
         }
 
-        Object parseExpression() {
-            Object x = parseTerm();
+        ExpressionNode parseExpression() {
+            ExpressionNode x = parseTerm();
             for (;;) {
-                if (eat('+')) x = toDouble(x) + toDouble(parseTerm());
-                else if (eat('-')) x = toDouble(x) - toDouble(parseTerm());
+                if (eat('+')) x = new ExpressionNode.Arithmetic('+', x, parseTerm());
+                else if (eat('-')) x = new ExpressionNode.Arithmetic('-', x, parseTerm());
                 else return x;
             }
         }
 
-        Object parseTerm() {
-            Object x = parseFactor();
+        ExpressionNode parseTerm() {
+            ExpressionNode x = parseFactor();
             for (;;) {
-                if (eat('*')) x = toDouble(x) * toDouble(parseFactor());
-                else if (eat('/')) x = toDouble(x) / toDouble(parseFactor());
+                if (eat('*')) x = new ExpressionNode.Arithmetic('*', x, parseFactor());
+                else if (eat('/')) x = new ExpressionNode.Arithmetic('/', x, parseFactor());
                 else return x;
             }
         }
 
-        Object parseFactor() {
+        ExpressionNode parseFactor() {
             if (eat('+')) return parseFactor();
-            if (eat('-')) return -toDouble(parseFactor());
+            if (eat('-')) return new ExpressionNode.Negate(parseFactor());
 
-            Object x;
+            ExpressionNode x;
             int startPos = this.pos;
 
             if (eat('(')) {
                 x = parseTernary();
                 eat(')');
-            } else if (isLetter(ch)) {
-                while (isLetterOrDigit(ch)) nextChar();
-                String func = str.substring(startPos, pos);
+            } else if (isIdentifierStart(ch)) {
+                String name = parseIdentifier();
 
                 if (eat('(')) {
-                    Object arg1 = parseTernary();
+                    ExpressionNode arg1 = parseTernary();
                     if (eat(',')) {
-                        Object arg2 = parseTernary();
+                        ExpressionNode arg2 = parseTernary();
                         eat(')');
-                        if (mathFunctions2.containsKey(func)) {
-                            x = mathFunctions2.get(func).apply(toDouble(arg1), toDouble(arg2));
-                        } else if (func.equals("format")) {
-                            x = doFormat(arg1, arg2);
+                        WindowBuffer.Kind window = WindowBuffer.Kind.byName(name);
+                        if (window != null) {
+                            x = new ExpressionNode.Window(window, arg1, parseWindowTicks(name, arg2));
+                        } else if (mathFunctions2.containsKey(name)) {
+                            x = new ExpressionNode.Call2(name, mathFunctions2.get(name), arg1, arg2);
+                        } else if (name.equals("format")) {
+                            x = new ExpressionNode.Format(arg1, arg2);
                         } else {
-                            throw new RuntimeException("Unknown 2-arg function: " + func);
+                            throw new ExpressionException("Unknown 2-arg function: " + name);
                         }
                     } else {
                         eat(')');
-                        if (mathFunctions.containsKey(func)) {
-                            x = mathFunctions.get(func).apply(toDouble(arg1));
+                        if (mathFunctions.containsKey(name)) {
+                            x = new ExpressionNode.Call1(name, mathFunctions.get(name), arg1);
                         } else {
-                            throw new RuntimeException("Unknown function: " + func);
+                            throw new ExpressionException("Unknown function: " + name);
                         }
                     }
+                } else if (name.equals("true") || name.equals("false")) {
+                    x = new ExpressionNode.BooleanLiteral(Boolean.parseBoolean(name));
                 } else {
-                    throw new RuntimeException("Unexpected identifier: " + func);
+                    // 関数呼び出しでない識別子は変数参照（評価時にキーで直接ルックアップ）
+                    x = new ExpressionNode.Variable(name);
                 }
             } else if (ch == '"') {
                 nextChar();
                 int start = pos;
                 while (ch != '"' && ch != -1) nextChar();
-                x = str.substring(start, pos);
+                x = new ExpressionNode.StringLiteral(str.substring(start, pos));
                 eat('"');
             } else if ((ch >= '0' && ch <= '9') || ch == '.') {
                 while ((ch >= '0' && ch <= '9') || ch == '.') nextChar();
-                x = Double.parseDouble(str.substring(startPos, pos));
+                x = new ExpressionNode.NumberLiteral(Double.parseDouble(str.substring(startPos, pos)));
             } else {
-                throw new RuntimeException("Unexpected char: " + (char) ch);
+                throw new ExpressionException("Unexpected char: " + (char) ch);
             }
 
             return x;
         }
 
-        private static Object doFormat(Object value, Object formatString) {
-            String pattern = formatString.toString();
-            DecimalFormat df = new DecimalFormat(pattern);
-            return df.format(toDouble(value));
+        /**
+         * 窓関数の長さ（ティック数）を取得。定数の 1〜MAX_TICKS のみ許可する
+         */
+        int parseWindowTicks(String name, ExpressionNode arg) {
+            ExpressionNode folded = ExpressionOptimizer.fold(arg);
+            if (!(folded instanceof ExpressionNode.NumberLiteral n)) {
+                throw new ExpressionException("Window length of " + name + " must be a constant number of ticks");
+            }
+            double ticks = n.value();
+            if (ticks < 1 || ticks > WindowBuffer.MAX_TICKS || ticks != Math.rint(ticks)) {
+                throw new ExpressionException("Window length of " + name + " must be an integer in 1.." + WindowBuffer.MAX_TICKS);
+            }
+            return (int) ticks;
+        }
+
+        /**
+         * 識別子を読み取る。ドット区切りのキー（player.posX, player.item.mainhand など）を
+         * 1つのトークンとして扱い、各セグメントは英字または '_' で始まる必要がある。
+         */
+        String parseIdentifier() {
+            int start = pos;
+            while (true) {
+                if (!isIdentifierStart(ch)) {
+                    throw new ExpressionException("Invalid identifier at " + pos + ": " + str.substring(start, pos));
+                }
+                while (isIdentifierPart(ch)) nextChar();
+                if (ch != '.') break;
+                nextChar();
+            }
+            return str.substring(start, pos);
         }
 
         static boolean isLetter(int c) {
@@ -218,17 +260,12 @@ public class ExpressionEvaluator {
             return isLetter(c) || (c >= '0' && c <= '9');
         }
 
-        static double toDouble(Object o) {
-            if (o instanceof Number n) return n.doubleValue();
-            try { return Double.parseDouble(o.toString()); } catch (Exception e) { return 0; }
+        static boolean isIdentifierStart(int c) {
+            return isLetter(c) || c == '_';
         }
 
-        static boolean toBoolean(Object o) {
-            if (o instanceof Boolean b) return b;
-            String s = o.toString().toLowerCase();
-            if (s.equals("true")) return true;
-            if (s.equals("false")) return false;
-            return toDouble(o) != 0;
+        static boolean isIdentifierPart(int c) {
+            return isLetterOrDigit(c) || c == '_';
         }
     }
 }
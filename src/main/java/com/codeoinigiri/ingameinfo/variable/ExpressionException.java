@@ -0,0 +1,12 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+/**
+ * 式のパース・評価エラー。
+ * 毎フレーム発生し得るため、スタックトレースを取得しない軽量な例外として生成する。
+ */
+public class ExpressionException extends RuntimeException {
+
+    public ExpressionException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,484 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * ExpressionEvaluator がパースした式の構文木ノード。
+ * Single Responsibility Principle: 構文木の評価のみに責任を持つ
+ * パースは一度だけ行い、毎フレームは木の評価のみを行う。
+ *
+ * 各ノードは型ごとの評価メソッドを持ち、数値と真偽値はプリミティブのまま受け渡す。
+ * 文字列は最終出力（または文字列を必要とする演算）でのみ生成する。
+ */
+interface ExpressionNode {
+    /**
+     * 静的に分かるノードの型
+     */
+    enum ValueType {
+        NUMBER, BOOLEAN, STRING,
+        /** 変数など、評価するまで型が決まらない値 */
+        DYNAMIC
+    }
+
+    ValueType type();
+
+    double evalNumber(VariableLookup vars);
+
+    boolean evalBoolean(VariableLookup vars);
+
+    String evalString(VariableLookup vars);
+
+    /**
+     * 現在の値が数値として扱えるか（== / != の比較方法の判定用）
+     */
+    default boolean isNumberAt(VariableLookup vars) {
+        return type() == ValueType.NUMBER;
+    }
+
+    /**
+     * 子ノード（リテラル・変数は空）
+     */
+    default List<ExpressionNode> children() {
+        return List.of();
+    }
+
+    /**
+     * 部分木に含まれる時間窓関数を集める
+     */
+    static void collectWindows(ExpressionNode node, List<Window> out) {
+        if (node instanceof Window w) out.add(w);
+        for (ExpressionNode child : node.children()) {
+            collectWindows(child, out);
+        }
+    }
+
+    /**
+     * 部分木が参照する変数キーを集める（依存関係の追跡用）
+     */
+    static void collectVariables(ExpressionNode node, Set<String> out) {
+        if (node instanceof Variable v) {
+            out.add(v.key());
+            return;
+        }
+        for (ExpressionNode child : node.children()) {
+            collectVariables(child, out);
+        }
+    }
+
+    // ===============================
+    // 型ごとの基底
+    // ===============================
+
+    /** 数値を返すノードの基底 */
+    interface NumberNode extends ExpressionNode {
+        @Override
+        default ValueType type() {
+            return ValueType.NUMBER;
+        }
+
+        @Override
+        default boolean evalBoolean(VariableLookup vars) {
+            return evalNumber(vars) != 0;
+        }
+
+        @Override
+        default String evalString(VariableLookup vars) {
+            return formatNumber(evalNumber(vars));
+        }
+    }
+
+    /** 真偽値を返すノードの基底 */
+    interface BooleanNode extends ExpressionNode {
+        @Override
+        default ValueType type() {
+            return ValueType.BOOLEAN;
+        }
+
+        @Override
+        default double evalNumber(VariableLookup vars) {
+            return evalBoolean(vars) ? 1 : 0;
+        }
+
+        @Override
+        default String evalString(VariableLookup vars) {
+            return evalBoolean(vars) ? "true" : "false";
+        }
+    }
+
+    /** 文字列を返すノードの基底 */
+    interface StringNode extends ExpressionNode {
+        @Override
+        default ValueType type() {
+            return ValueType.STRING;
+        }
+
+        @Override
+        default double evalNumber(VariableLookup vars) {
+            return parseNumber(evalString(vars));
+        }
+
+        @Override
+        default boolean evalBoolean(VariableLookup vars) {
+            return parseBoolean(evalString(vars));
+        }
+    }
+
+    // ===============================
+    // リテラル・変数
+    // ===============================
+
+    /** 数値リテラル */
+    record NumberLiteral(double value) implements NumberNode {
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            return value;
+        }
+    }
+
+    /** 真偽値リテラル (true / false) */
+    record BooleanLiteral(boolean value) implements BooleanNode {
+        @Override
+        public boolean evalBoolean(VariableLookup vars) {
+            return value;
+        }
+    }
+
+    /** 文字列リテラル */
+    record StringLiteral(String value) implements StringNode {
+        @Override
+        public String evalString(VariableLookup vars) {
+            return value;
+        }
+    }
+
+    /** 変数参照（コンパイル時に割り当てたスロット番号で直接ルックアップ） */
+    record Variable(String key, int slot) implements ExpressionNode {
+        Variable(String key) {
+            this(key, VariableTable.getInstance().intern(key));
+        }
+
+        @Override
+        public ValueType type() {
+            return ValueType.DYNAMIC;
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            // 数値として保持されている値は文字列を経由せずに読む
+            if (vars.isNumber(slot, key)) return vars.getNumber(slot, key);
+            return parseNumber(resolve(vars));
+        }
+
+        @Override
+        public boolean evalBoolean(VariableLookup vars) {
+            if (vars.isNumber(slot, key)) return vars.getNumber(slot, key) != 0;
+            return parseBoolean(resolve(vars));
+        }
+
+        @Override
+        public String evalString(VariableLookup vars) {
+            return resolve(vars);
+        }
+
+        @Override
+        public boolean isNumberAt(VariableLookup vars) {
+            return vars.isNumber(slot, key) || isNumeric(resolve(vars));
+        }
+
+        private String resolve(VariableLookup vars) {
+            String value = vars.get(slot, key);
+            if (value == null) throw new ExpressionException("Unknown variable: " + key);
+            return value;
+        }
+    }
+
+    // ===============================
+    // 演算子
+    // ===============================
+
+    /** 単項マイナス */
+    record Negate(ExpressionNode operand) implements NumberNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(operand);
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            return -operand.evalNumber(vars);
+        }
+    }
+
+    /** 四則演算 (+, -, *, /) */
+    record Arithmetic(char op, ExpressionNode left, ExpressionNode right) implements NumberNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            double l = left.evalNumber(vars);
+            double r = right.evalNumber(vars);
+            return switch (op) {
+                case '+' -> l + r;
+                case '-' -> l - r;
+                case '*' -> l * r;
+                case '/' -> l / r;
+                default -> throw new ExpressionException("Unknown operator: " + op);
+            };
+        }
+    }
+
+    /** 比較演算 (<, <=, >, >=, ==, !=) */
+    record Comparison(String op, ExpressionNode left, ExpressionNode right) implements BooleanNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public boolean evalBoolean(VariableLookup vars) {
+            return switch (op) {
+                case "<" -> left.evalNumber(vars) < right.evalNumber(vars);
+                case "<=" -> left.evalNumber(vars) <= right.evalNumber(vars);
+                case ">" -> left.evalNumber(vars) > right.evalNumber(vars);
+                case ">=" -> left.evalNumber(vars) >= right.evalNumber(vars);
+                case "==" -> valueEquals(left, right, vars);
+                case "!=" -> !valueEquals(left, right, vars);
+                default -> throw new ExpressionException("Unknown operator: " + op);
+            };
+        }
+    }
+
+    /** 三項演算子（選ばれた分岐のみ評価） */
+    record Ternary(ExpressionNode condition, ExpressionNode whenTrue, ExpressionNode whenFalse) implements ExpressionNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(condition, whenTrue, whenFalse);
+        }
+
+        @Override
+        public ValueType type() {
+            return whenTrue.type() == whenFalse.type() ? whenTrue.type() : ValueType.DYNAMIC;
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            return select(vars).evalNumber(vars);
+        }
+
+        @Override
+        public boolean evalBoolean(VariableLookup vars) {
+            return select(vars).evalBoolean(vars);
+        }
+
+        @Override
+        public String evalString(VariableLookup vars) {
+            return select(vars).evalString(vars);
+        }
+
+        @Override
+        public boolean isNumberAt(VariableLookup vars) {
+            return select(vars).isNumberAt(vars);
+        }
+
+        private ExpressionNode select(VariableLookup vars) {
+            return condition.evalBoolean(vars) ? whenTrue : whenFalse;
+        }
+    }
+
+    // ===============================
+    // 関数
+    // ===============================
+
+    /** 1引数の数学関数 */
+    record Call1(String name, DoubleUnaryOperator function, ExpressionNode arg) implements NumberNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(arg);
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            return function.applyAsDouble(arg.evalNumber(vars));
+        }
+    }
+
+    /** 2引数の数学関数 */
+    record Call2(String name, DoubleBinaryOperator function,
+                 ExpressionNode arg1, ExpressionNode arg2) implements NumberNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(arg1, arg2);
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            return function.applyAsDouble(arg1.evalNumber(vars), arg2.evalNumber(vars));
+        }
+    }
+
+    /** format(value, "pattern") */
+    record Format(ExpressionNode value, ExpressionNode pattern) implements StringNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(value, pattern);
+        }
+
+        @Override
+        public String evalString(VariableLookup vars) {
+            return formatPattern(value.evalNumber(vars), pattern.evalString(vars));
+        }
+    }
+
+    /**
+     * パターンが定数の format(value, "pattern")。
+     * DecimalFormat はスレッドセーフではないため、スレッドごとに一度だけ生成して使い回す
+     */
+    record PatternFormat(ExpressionNode value, String pattern, ThreadLocal<DecimalFormat> formatter) implements StringNode {
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(value);
+        }
+
+        PatternFormat(ExpressionNode value, String pattern) {
+            this(value, pattern, ThreadLocal.withInitial(() -> new DecimalFormat(pattern)));
+        }
+
+        @Override
+        public String evalString(VariableLookup vars) {
+            return format(value.evalNumber(vars));
+        }
+
+        String format(double v) {
+            return formatter.get().format(v);
+        }
+    }
+
+    /**
+     * 時間窓関数 delta / rate / avg / wmin / wmax (value, ticks)。
+     * 値はティックごとにサンプルされ、評価時は最後のサンプル時点の集計結果を返す。
+     * サンプルがまだない間は、差分系は 0、それ以外は現在値を返す
+     */
+    record Window(WindowBuffer.Kind kind, ExpressionNode arg, int ticks, WindowBuffer buffer) implements NumberNode {
+        Window(WindowBuffer.Kind kind, ExpressionNode arg, int ticks) {
+            this(kind, arg, ticks, new WindowBuffer(kind, ticks));
+        }
+
+        @Override
+        public List<ExpressionNode> children() {
+            return List.of(arg);
+        }
+
+        @Override
+        public double evalNumber(VariableLookup vars) {
+            if (buffer.isEmpty()) {
+                return kind.needsHistory() ? 0 : arg.evalNumber(vars);
+            }
+            return buffer.result();
+        }
+
+        /**
+         * 現在の値をサンプルとして追加。値が取得できないティックは窓をリセットする
+         */
+        void sample(VariableLookup vars) {
+            try {
+                buffer.push(arg.evalNumber(vars));
+            } catch (ExpressionException e) {
+                buffer.clear();
+            }
+        }
+    }
+
+    // ===============================
+    // 変換ヘルパー
+    // ===============================
+
+    /**
+     * == / != の比較。両辺が数値なら数値として、それ以外は文字列として比較する
+     */
+    static boolean valueEquals(ExpressionNode left, ExpressionNode right, VariableLookup vars) {
+        if (left.isNumberAt(vars) && right.isNumberAt(vars)) {
+            return left.evalNumber(vars) == right.evalNumber(vars);
+        }
+        if (left.type() == ValueType.BOOLEAN || right.type() == ValueType.BOOLEAN) {
+            return left.evalBoolean(vars) == right.evalBoolean(vars);
+        }
+        return left.evalString(vars).equals(right.evalString(vars));
+    }
+
+    /**
+     * DecimalFormat のパターンで数値を整形
+     */
+    static String formatPattern(double value, String pattern) {
+        try {
+            return new DecimalFormat(pattern).format(value);
+        } catch (IllegalArgumentException e) {
+            throw new ExpressionException("Invalid format pattern: " + pattern);
+        }
+    }
+
+    /**
+     * 数値を表示用の文字列に変換。整数値は "3.0" ではなく "3" と表示する
+     * それ以外は有効数字6桁に丸め（${player.posX / 8} が 15.432098765432099 のような長い小数にならないように）、
+     * 整数部の桁は丸めないため、0 以外の値が "0" や "-0" になることはない。桁数を指定したい場合は format(...) を使う
+     */
+    static String formatNumber(double d) {
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+            return Long.toString((long) d);
+        }
+        if (!Double.isFinite(d) || Math.abs(d) >= 1e15) {
+            return Double.toString(d);
+        }
+        int scale = Math.max(0, 5 - (int) Math.floor(Math.log10(Math.abs(d))));
+        return new BigDecimal(d).setScale(scale, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * "-12" や "3.5" のような数値表記かを判定（正規表現を使わない）
+     */
+    static boolean isNumeric(String s) {
+        int len = s.length();
+        int i = 0;
+        if (len > 0 && s.charAt(0) == '-') i++;
+        int digitsStart = i;
+        while (i < len && isDigit(s.charAt(i))) i++;
+        if (i == digitsStart) return false;
+        if (i == len) return true;
+        if (s.charAt(i) != '.') return false;
+        int fractionStart = ++i;
+        while (i < len && isDigit(s.charAt(i))) i++;
+        return i == len && i > fractionStart;
+    }
+
+    static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 文字列を数値に変換。一般的な表記は例外を使わずに判定し、
+     * それ以外（"1e5" や ".5" など）は Double.parseDouble に任せ、変換できなければ 0
+     */
+    static double parseNumber(String s) {
+        if (isNumeric(s)) return Double.parseDouble(s);
+        if (s.isEmpty()) return 0;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static boolean parseBoolean(String s) {
+        if (s.equalsIgnoreCase("true")) return true;
+        if (s.equalsIgnoreCase("false")) return false;
+        return parseNumber(s) != 0;
+    }
+}
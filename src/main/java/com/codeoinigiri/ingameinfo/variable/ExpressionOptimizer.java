@@ -0,0 +1,111 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.text.DecimalFormat;
+
+/**
+ * パース直後の構文木に定数畳み込みを行う。
+ * Single Responsibility Principle: 構文木の最適化のみに責任を持つ
+ *
+ * 変数に依存しない部分木（pow(2, 10) や定数同士の比較など）はリテラルに置き換え、
+ * 条件が定数の三項演算子は選ばれる分岐だけを残す。
+ * format のパターンが定数なら DecimalFormat を一度だけ生成する。
+ * これにより毎フレームの評価は変数に依存する部分だけになる。
+ */
+final class ExpressionOptimizer {
+    // 定数の評価に使うルックアップ（定数部分木は変数を参照しない）
+    private static final VariableLookup NO_VARIABLES = key -> null;
+
+    private ExpressionOptimizer() {
+        // ユーティリティクラスのため、インスタンス化を防止
+    }
+
+    /**
+     * 構文木を畳み込んだ新しい構文木を返す
+     */
+    static ExpressionNode fold(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Negate n) {
+            return foldIfConstant(new ExpressionNode.Negate(fold(n.operand())));
+        }
+        if (node instanceof ExpressionNode.Arithmetic a) {
+            return foldIfConstant(new ExpressionNode.Arithmetic(a.op(), fold(a.left()), fold(a.right())));
+        }
+        if (node instanceof ExpressionNode.Comparison c) {
+            return foldIfConstant(new ExpressionNode.Comparison(c.op(), fold(c.left()), fold(c.right())));
+        }
+        if (node instanceof ExpressionNode.Call1 c) {
+            return foldIfConstant(new ExpressionNode.Call1(c.name(), c.function(), fold(c.arg())));
+        }
+        if (node instanceof ExpressionNode.Call2 c) {
+            return foldIfConstant(new ExpressionNode.Call2(c.name(), c.function(), fold(c.arg1()), fold(c.arg2())));
+        }
+        if (node instanceof ExpressionNode.Ternary t) {
+            ExpressionNode condition = fold(t.condition());
+            if (isConstant(condition)) {
+                return condition.evalBoolean(NO_VARIABLES) ? fold(t.whenTrue()) : fold(t.whenFalse());
+            }
+            return new ExpressionNode.Ternary(condition, fold(t.whenTrue()), fold(t.whenFalse()));
+        }
+        if (node instanceof ExpressionNode.Format f) {
+            return foldFormat(fold(f.value()), fold(f.pattern()));
+        }
+        if (node instanceof ExpressionNode.Window w) {
+            // 窓関数はサンプルの履歴を持つため、引数が定数でも畳み込まない
+            ExpressionNode arg = fold(w.arg());
+            return arg == w.arg() ? w : new ExpressionNode.Window(w.kind(), arg, w.ticks());
+        }
+        return node;
+    }
+
+    /**
+     * format(value, pattern) の畳み込み。
+     * 両方定数なら結果の文字列に、パターンだけ定数なら整形器を事前生成したノードにする
+     *
+     * @throws ExpressionException パターンが定数で不正な場合
+     */
+    private static ExpressionNode foldFormat(ExpressionNode value, ExpressionNode pattern) {
+        if (!isConstant(pattern)) {
+            return new ExpressionNode.Format(value, pattern);
+        }
+        String patternText = pattern.evalString(NO_VARIABLES);
+        try {
+            new DecimalFormat(patternText);
+        } catch (IllegalArgumentException e) {
+            // 定数の不正なパターンは毎フレーム失敗させず、パースエラーとして一度だけ報告する
+            throw new ExpressionException("Invalid format pattern: " + patternText);
+        }
+        return foldIfConstant(new ExpressionNode.PatternFormat(value, patternText));
+    }
+
+    /**
+     * すべての子がリテラルならノードを評価してリテラルに置き換える
+     */
+    private static ExpressionNode foldIfConstant(ExpressionNode node) {
+        if (!childrenConstant(node)) return node;
+        try {
+            return switch (node.type()) {
+                case NUMBER -> new ExpressionNode.NumberLiteral(node.evalNumber(NO_VARIABLES));
+                case BOOLEAN -> new ExpressionNode.BooleanLiteral(node.evalBoolean(NO_VARIABLES));
+                case STRING -> new ExpressionNode.StringLiteral(node.evalString(NO_VARIABLES));
+                case DYNAMIC -> node;
+            };
+        } catch (RuntimeException e) {
+            return node;
+        }
+    }
+
+    private static boolean childrenConstant(ExpressionNode node) {
+        if (node instanceof ExpressionNode.Negate n) return isConstant(n.operand());
+        if (node instanceof ExpressionNode.Arithmetic a) return isConstant(a.left()) && isConstant(a.right());
+        if (node instanceof ExpressionNode.Comparison c) return isConstant(c.left()) && isConstant(c.right());
+        if (node instanceof ExpressionNode.Call1 c) return isConstant(c.arg());
+        if (node instanceof ExpressionNode.Call2 c) return isConstant(c.arg1()) && isConstant(c.arg2());
+        if (node instanceof ExpressionNode.PatternFormat f) return isConstant(f.value());
+        return false;
+    }
+
+    static boolean isConstant(ExpressionNode node) {
+        return node instanceof ExpressionNode.NumberLiteral
+                || node instanceof ExpressionNode.BooleanLiteral
+                || node instanceof ExpressionNode.StringLiteral;
+    }
+}
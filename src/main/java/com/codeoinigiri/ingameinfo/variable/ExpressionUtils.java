@@ -1,6 +1,9 @@
 package com.codeoinigiri.ingameinfo.variable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,6 +14,8 @@ import java.util.regex.Pattern;
  */
 public class ExpressionUtils {
     private static final Pattern EXPRESSION_PATTERN = Pattern.compile("\\$\\{([^{}]+)}");
+    // 行ごとの分割結果のキャッシュ（行テキスト → リテラルと式の並び）
+    private static final Map<String, EmbeddedLine> LINE_CACHE = new ConcurrentHashMap<>();
 
     private ExpressionUtils() {
         // ユーティリティクラスのため、インスタンス化を防止
@@ -24,21 +29,117 @@ public class ExpressionUtils {
      * @return 評価後の文字列
      */
     public static String evaluateEmbedded(String input, Map<String, String> vars) {
+        return evaluateEmbedded(input, (VariableLookup) vars::get);
+    }
+
+    /**
+     * 文字列内の ${...} 式を、変数ルックアップを使って評価して置換
+     *
+     * @param input 入力文字列
+     * @param vars 変数ルックアップ
+     * @return 評価後の文字列
+     */
+    public static String evaluateEmbedded(String input, VariableLookup vars) {
+        return evaluateEmbedded(input, vars, EvaluationMode.INTERPRETER);
+    }
+
+    /**
+     * 文字列内の ${...} 式を、指定した評価方式で評価して置換
+     *
+     * @param input 入力文字列
+     * @param vars 変数ルックアップ
+     * @param mode 評価方式
+     * @return 評価後の文字列
+     */
+    public static String evaluateEmbedded(String input, VariableLookup vars, EvaluationMode mode) {
         if (input == null || input.isEmpty()) {
             return input;
         }
 
-        Matcher matcher = EXPRESSION_PATTERN.matcher(input);
+        EmbeddedLine line = LINE_CACHE.computeIfAbsent(input, ExpressionUtils::split);
+        if (line.expressions.length == 0) {
+            return input;
+        }
+
         StringBuilder result = new StringBuilder();
+        for (int i = 0; i < line.expressions.length; i++) {
+            result.append(line.literals[i]);
+            result.append(line.expressions[i].evaluate(vars, mode));
+        }
+        result.append(line.literals[line.expressions.length]);
 
+        return result.toString();
+    }
+
+    /**
+     * 行に含まれる ${...} 式を事前にパースしてキャッシュする（コンテキスト読み込み時）
+     *
+     * @param input 入力文字列
+     */
+    public static void precompile(String input) {
+        precompile(input, EvaluationMode.INTERPRETER);
+    }
+
+    /**
+     * 行に含まれる ${...} 式を事前にパースし、COMPILED モードならハンドルも生成する
+     *
+     * @param input 入力文字列
+     * @param mode 評価方式
+     */
+    public static void precompile(String input, EvaluationMode mode) {
+        List<CompiledExpression> expressions = getExpressions(input);
+        if (mode == EvaluationMode.COMPILED) {
+            expressions.forEach(CompiledExpression::compile);
+        }
+    }
+
+    /**
+     * 行のリテラル部分を取得。戻り値の i 番目の後に getExpressions の i 番目の式が続く
+     *
+     * @param input 入力文字列
+     * @return リテラル部分の配列（式の数 + 1 個）
+     */
+    public static String[] getLiterals(String input) {
+        if (input == null || input.isEmpty()) return new String[] { "" };
+        return LINE_CACHE.computeIfAbsent(input, ExpressionUtils::split).literals.clone();
+    }
+
+    /**
+     * 行に含まれるパース済みの式を取得（ベンチマークなど用）
+     *
+     * @param input 入力文字列
+     * @return 行内の式のリスト
+     */
+    public static List<CompiledExpression> getExpressions(String input) {
+        if (input == null || input.isEmpty()) return List.of();
+        return List.of(LINE_CACHE.computeIfAbsent(input, ExpressionUtils::split).expressions);
+    }
+
+    /**
+     * 行と式のキャッシュを破棄
+     */
+    public static void clearCache() {
+        LINE_CACHE.clear();
+        ExpressionEvaluator.clearCache();
+    }
+
+    /**
+     * 行をリテラル部分と式部分に分割し、式をパースする
+     */
+    private static EmbeddedLine split(String input) {
+        Matcher matcher = EXPRESSION_PATTERN.matcher(input);
+        List<String> literals = new ArrayList<>();
+        List<CompiledExpression> expressions = new ArrayList<>();
+
+        int last = 0;
         while (matcher.find()) {
-            String expr = matcher.group(1).trim();
-            String value = ExpressionEvaluator.eval(expr, vars);
-            matcher.appendReplacement(result, Matcher.quoteReplacement(value));
+            literals.add(input.substring(last, matcher.start()));
+            expressions.add(ExpressionEvaluator.compile(matcher.group(1).trim()));
+            last = matcher.end();
         }
-        matcher.appendTail(result);
+        literals.add(input.substring(last));
 
-        return result.toString();
+        return new EmbeddedLine(literals.toArray(new String[0]), expressions.toArray(new CompiledExpression[0]));
     }
 
     /**
@@ -47,4 +148,9 @@ public class ExpressionUtils {
     static Pattern getExpressionPattern() {
         return EXPRESSION_PATTERN;
     }
+
+    /**
+     * 分割済みの行: literals[i] の後に expressions[i] が続き、最後に literals[n] が付く
+     */
+    private record EmbeddedLine(String[] literals, CompiledExpression[] expressions) {}
 }
@@ -0,0 +1,64 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.util.Arrays;
+
+/**
+ * コンパイル済みの式に含まれる時間窓関数の一覧。
+ * Single Responsibility Principle: 窓関数へのティックごとのサンプル供給のみに責任を持つ
+ *
+ * 式のキャッシュと同じ寿命を持ち、コンテキスト再読み込みでキャッシュと一緒に破棄される。
+ * sampleAll は配列を走査するだけで割り当てを行わない。
+ */
+public final class ExpressionWindows {
+    private static volatile ExpressionNode.Window[] windows = new ExpressionNode.Window[0];
+    // sampleAll のたびに進む番号（窓関数を含む行の描画キャッシュの判定用）
+    private static volatile long generation;
+
+    private ExpressionWindows() {
+        // ユーティリティクラスのため、インスタンス化を防止
+    }
+
+    /**
+     * 窓関数を登録（式のコンパイル時に呼ばれる）
+     */
+    static synchronized void register(ExpressionNode.Window window) {
+        ExpressionNode.Window[] current = windows;
+        ExpressionNode.Window[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = window;
+        windows = next;
+    }
+
+    /**
+     * すべての窓関数に現在の値をサンプルとして追加（1ティックに一度）
+     *
+     * @param vars 変数ルックアップ
+     */
+    public static void sampleAll(VariableLookup vars) {
+        for (ExpressionNode.Window window : windows) {
+            window.sample(vars);
+        }
+        generation++;
+    }
+
+    /**
+     * サンプルが追加されるたびに変わる番号
+     * 窓関数の結果はサンプル追加時にしか変わらないため、同じ番号の間は前回の評価結果を使える
+     */
+    public static long generation() {
+        return generation;
+    }
+
+    /**
+     * 登録されている窓関数の数
+     */
+    public static int size() {
+        return windows.length;
+    }
+
+    /**
+     * 登録を破棄（式のキャッシュ破棄時）
+     */
+    static synchronized void clear() {
+        windows = new ExpressionNode.Window[0];
+    }
+}
@@ -0,0 +1,106 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.util.Arrays;
+
+/**
+ * 処理時間（ナノ秒）の分布を記録するヒストグラム。
+ * Single Responsibility Principle: 処理時間の記録と分位点の概算のみに責任を持つ
+ *
+ * 2の累乗ごとの区間をさらに4つに分けた固定のバケットに数えるだけなので、
+ * 記録は配列の加算のみで割り当てを行わない。分位点はバケットの中央値で概算する（誤差は約12%以内）。
+ */
+public final class LatencyHistogram {
+    // 2の累乗の区間を分割する数（2^SUB_BITS）
+    private static final int SUB_BITS = 2;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * 記録の要約
+     *
+     * @param count      記録数
+     * @param totalNanos 合計時間（ナノ秒）
+     * @param p50Nanos   中央値の概算（ナノ秒）
+     * @param p99Nanos   99パーセンタイルの概算（ナノ秒）
+     * @param maxNanos   最大値（ナノ秒）
+     */
+    public record Summary(long count, long totalNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+        public double meanNanos() {
+            return count > 0 ? (double) totalNanos / count : 0;
+        }
+    }
+
+    /**
+     * 処理時間を記録
+     *
+     * @param nanos 処理時間（ナノ秒）
+     */
+    public synchronized void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[indexOf(value)]++;
+        count++;
+        totalNanos += value;
+        if (value > maxNanos) maxNanos = value;
+    }
+
+    /**
+     * 現在の記録を要約
+     */
+    public synchronized Summary summary() {
+        return new Summary(count, totalNanos, percentile(0.50), percentile(0.99), maxNanos);
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    /**
+     * 記録を破棄
+     */
+    public synchronized void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    private long percentile(double fraction) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(midpointOf(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * 値が入るバケットの番号
+     * SUB_COUNT 未満はそのまま、それ以上は最上位ビットの位置と続く SUB_BITS ビットで決める
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+        return (msb - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * バケットに入る値の範囲の中央
+     */
+    private static long midpointOf(int index) {
+        if (index < SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        long width = 1L << shift;
+        return lower + width / 2;
+    }
+}
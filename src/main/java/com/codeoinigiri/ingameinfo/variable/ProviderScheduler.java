@@ -0,0 +1,243 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * プロバイダーの定期更新をまとめて実行するスケジューラー。
+ * Single Responsibility Principle: 更新タスクの実行タイミングと1ティックあたりの実行時間の管理のみに責任を持つ
+ *
+ * 各タスクは間隔（ティック数）と位相を持ち、(tick + phase) % interval == 0 のティックに実行される。
+ * 位相は登録時に、既存のタスクと同じティックに重なりにくい値を選ぶ（10tick と 20tick のタスクが
+ * 同じティックに集中しないようにする）。
+ * 1ティックの実行時間が予算を超えた場合、残りのタスクは次のティックに持ち越す。
+ * 持ち越し中に再び実行時期が来たタスクは1回にまとめる。
+ * tick はクライアントのメインスレッドからのみ呼ばれる前提。
+ */
+public final class ProviderScheduler {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    // 位相を選ぶ際に負荷を見積もるティック数（一般的な間隔 1, 2, 4, 5, 10, 20 などの公倍数）
+    private static final int HORIZON = 1200;
+
+    private volatile Task[] tasks = new Task[0];
+    // 見積もり用の各ティックのタスク数
+    private final int[] load = new int[HORIZON];
+    // 実行待ちのタスク（予算を超えて持ち越したものを含む）
+    private final Deque<Task> queue = new ArrayDeque<>();
+
+    private long tick;
+    private long totalRuns;
+    private long totalDeferrals;
+    private long overBudgetTicks;
+    private long lastTickNanos;
+    private long maxTickNanos;
+    private long totalTickNanos;
+
+    /**
+     * スケジュールされた更新タスク
+     */
+    private static final class Task {
+        final String name;
+        final long interval;
+        final int phase;
+        final Runnable action;
+        boolean pending;
+        long runs;
+        long deferrals;
+        long coalesced;
+        // 実行時間の分布（/igi stats と igi.* 変数からも参照される）
+        final LatencyHistogram cost;
+
+        Task(String name, long interval, int phase, Runnable action) {
+            this.name = name;
+            this.interval = interval;
+            this.phase = phase;
+            this.action = action;
+            this.cost = VariableCosts.provider(name);
+        }
+    }
+
+    /**
+     * タスクごとの統計
+     *
+     * @param name       タスク名
+     * @param interval   実行間隔（ティック）
+     * @param phase      位相
+     * @param runs       実行回数
+     * @param deferrals  予算超過で次のティックに持ち越された回数
+     * @param coalesced  持ち越し中に実行時期が来てまとめられた回数
+     * @param avgMicros  1回あたりの平均実行時間（マイクロ秒）
+     * @param p99Micros  実行時間の99パーセンタイル（マイクロ秒）
+     * @param maxMicros  最大実行時間（マイクロ秒）
+     */
+    public record TaskStats(String name, long interval, int phase, long runs, long deferrals,
+                            long coalesced, double avgMicros, double p99Micros, double maxMicros) {}
+
+    /**
+     * スケジューラー全体の統計
+     *
+     * @param ticks          経過ティック数
+     * @param tasks          登録タスク数
+     * @param runs           タスクの実行回数
+     * @param deferrals      持ち越しの回数
+     * @param overBudgetTicks 予算を超えたティック数
+     * @param pending        現在持ち越されているタスク数
+     * @param lastMicros     直前のティックの実行時間（マイクロ秒）
+     * @param avgMicros      1ティックの平均実行時間（マイクロ秒）
+     * @param maxMicros      1ティックの最大実行時間（マイクロ秒）
+     * @param taskStats      タスクごとの統計
+     */
+    public record Stats(long ticks, int tasks, long runs, long deferrals, long overBudgetTicks, int pending,
+                        double lastMicros, double avgMicros, double maxMicros, List<TaskStats> taskStats) {
+        /**
+         * コマンド表示用の要約
+         */
+        public String summary() {
+            StringBuilder sb = new StringBuilder(String.format(
+                    "Ticks: %d, tasks: %d, runs: %d, deferred: %d, over budget: %d, pending: %d%n" +
+                            "Tick time: last %.1f us, avg %.1f us, max %.1f us",
+                    ticks, tasks, runs, deferrals, overBudgetTicks, pending, lastMicros, avgMicros, maxMicros));
+            for (TaskStats task : taskStats) {
+                sb.append(String.format("%n%s (every %d, phase %d): runs %d, deferred %d, coalesced %d, avg %.1f us, p99 %.1f us, max %.1f us",
+                        task.name(), task.interval(), task.phase(), task.runs(), task.deferrals(),
+                        task.coalesced(), task.avgMicros(), task.p99Micros(), task.maxMicros()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 更新タスクを登録。位相は既存のタスクと重なりにくい値が自動で選ばれる
+     *
+     * @param name     タスク名（統計表示用）
+     * @param interval 実行間隔（ティック、1以上）
+     * @param action   実行する処理
+     */
+    public synchronized void schedule(String name, long interval, Runnable action) {
+        long safeInterval = Math.max(1, interval);
+        int phase = choosePhase(safeInterval);
+        for (long t = Math.floorMod(-phase, safeInterval); t < HORIZON; t += safeInterval) {
+            load[(int) t]++;
+        }
+
+        Task[] current = tasks;
+        Task[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = new Task(name, safeInterval, phase, action);
+        tasks = next;
+        LOGGER.debug("Scheduled task '{}' every {} ticks (phase {})", name, safeInterval, phase);
+    }
+
+    /**
+     * 既存のタスクの実行ティックと重なる数が最も少ない位相を選ぶ
+     */
+    private int choosePhase(long interval) {
+        int candidates = (int) Math.min(interval, HORIZON);
+        int bestPhase = 0;
+        long bestCost = Long.MAX_VALUE;
+        for (int phase = 0; phase < candidates; phase++) {
+            long cost = 0;
+            for (long t = Math.floorMod(-phase, interval); t < HORIZON; t += interval) {
+                cost += load[(int) t];
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestPhase = phase;
+            }
+        }
+        return bestPhase;
+    }
+
+    /**
+     * 1ティック分のタスクを実行
+     * 予算を超えた時点で残りのタスクを次のティックに持ち越す（最低1つは必ず実行する）
+     *
+     * @param budgetNanos 1ティックの予算（ナノ秒）、0以下なら無制限
+     */
+    public void tick(long budgetNanos) {
+        long start = System.nanoTime();
+        tick++;
+
+        for (Task task : tasks) {
+            if ((tick + task.phase) % task.interval != 0) continue;
+            if (task.pending) {
+                task.coalesced++;
+            } else {
+                task.pending = true;
+                queue.add(task);
+            }
+        }
+
+        int ran = 0;
+        long now = start;
+        while (!queue.isEmpty()) {
+            if (ran > 0 && budgetNanos > 0 && now - start >= budgetNanos) {
+                overBudgetTicks++;
+                break;
+            }
+            Task task = queue.poll();
+            task.pending = false;
+            long taskStart = now;
+            try {
+                task.action.run();
+            } catch (Exception e) {
+                LOGGER.error("Scheduled task '{}' failed", task.name, e);
+            }
+            now = System.nanoTime();
+            long elapsed = now - taskStart;
+            task.runs++;
+            task.cost.record(elapsed);
+            ran++;
+        }
+
+        for (Task task : queue) {
+            task.deferrals++;
+        }
+        totalDeferrals += queue.size();
+        totalRuns += ran;
+
+        lastTickNanos = System.nanoTime() - start;
+        totalTickNanos += lastTickNanos;
+        maxTickNanos = Math.max(maxTickNanos, lastTickNanos);
+    }
+
+    /**
+     * 現在の統計を取得
+     */
+    public Stats getStats() {
+        List<TaskStats> taskStats = new ArrayList<>();
+        for (Task task : tasks) {
+            LatencyHistogram.Summary cost = task.cost.summary();
+            taskStats.add(new TaskStats(task.name, task.interval, task.phase, task.runs, task.deferrals, task.coalesced,
+                    cost.meanNanos() / 1000.0, cost.p99Nanos() / 1000.0, cost.maxNanos() / 1000.0));
+        }
+        return new Stats(tick, taskStats.size(), totalRuns, totalDeferrals, overBudgetTicks, queue.size(),
+                lastTickNanos / 1000.0, tick > 0 ? totalTickNanos / 1000.0 / tick : 0, maxTickNanos / 1000.0,
+                List.copyOf(taskStats));
+    }
+
+    /**
+     * すべてのタスクと統計を破棄（プロバイダーの再登録時）
+     * タスクの処理時間の記録も破棄し、再登録前の計測が VariableCosts に残らないようにする
+     */
+    public synchronized void clear() {
+        for (Task task : tasks) {
+            task.cost.reset();
+        }
+        tasks = new Task[0];
+        Arrays.fill(load, 0);
+        queue.clear();
+        tick = 0;
+        totalRuns = 0;
+        totalDeferrals = 0;
+        overBudgetTicks = 0;
+        lastTickNanos = 0;
+        maxTickNanos = 0;
+        totalTickNanos = 0;
+    }
+}
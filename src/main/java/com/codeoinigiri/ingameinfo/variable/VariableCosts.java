@@ -0,0 +1,119 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * プロバイダーの更新と API 変数の Supplier 呼び出しにかかった時間の記録。
+ * Single Responsibility Principle: 処理時間のヒストグラムを名前ごとに保持することのみに責任を持つ
+ *
+ * どのプロバイダーや Supplier がフレームの引っかかりの原因かを調べるため、
+ * 呼び出しごとの時間を LatencyHistogram に記録する。
+ * ヒストグラムは名前ごとに一度だけ作成し、以降の記録は割り当てを行わない。
+ */
+public final class VariableCosts {
+    private static final Map<String, LatencyHistogram> PROVIDERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> SUPPLIERS = new ConcurrentHashMap<>();
+
+    private VariableCosts() {
+        // ユーティリティクラスのため、インスタンス化を防止
+    }
+
+    /**
+     * 名前と要約の組
+     */
+    public record Entry(String name, LatencyHistogram.Summary summary) {}
+
+    /**
+     * プロバイダーのタスクのヒストグラムを取得（なければ作成）
+     *
+     * @param name タスク名
+     */
+    public static LatencyHistogram provider(String name) {
+        return PROVIDERS.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * API 変数の Supplier 呼び出しの時間を記録
+     *
+     * @param key   変数キー
+     * @param nanos 処理時間（ナノ秒）
+     */
+    public static void recordSupplier(String key, long nanos) {
+        SUPPLIERS.computeIfAbsent(key, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * プロバイダーの要約を合計時間の多い順に取得
+     */
+    public static List<Entry> providerSummaries() {
+        return summaries(PROVIDERS);
+    }
+
+    /**
+     * Supplier の要約を合計時間の多い順に取得
+     */
+    public static List<Entry> supplierSummaries() {
+        return summaries(SUPPLIERS);
+    }
+
+    private static List<Entry> summaries(Map<String, LatencyHistogram> histograms) {
+        List<Entry> entries = new ArrayList<>();
+        histograms.forEach((name, histogram) -> {
+            LatencyHistogram.Summary summary = histogram.summary();
+            if (summary.count() > 0) entries.add(new Entry(name, summary));
+        });
+        entries.sort(Comparator.comparingLong((Entry e) -> e.summary().totalNanos()).reversed());
+        return entries;
+    }
+
+    /**
+     * p99 が最も大きいものを取得
+     *
+     * @return 該当なしなら null
+     */
+    public static Entry slowest(List<Entry> entries) {
+        Entry slowest = null;
+        for (Entry entry : entries) {
+            if (slowest == null || entry.summary().p99Nanos() > slowest.summary().p99Nanos()) {
+                slowest = entry;
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * コマンド表示用の要約
+     */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder("Providers:");
+        appendEntries(sb, providerSummaries());
+        sb.append(String.format("%nSuppliers:"));
+        appendEntries(sb, supplierSummaries());
+        return sb.toString();
+    }
+
+    private static void appendEntries(StringBuilder sb, List<Entry> entries) {
+        if (entries.isEmpty()) {
+            sb.append(" none");
+            return;
+        }
+        for (Entry entry : entries) {
+            LatencyHistogram.Summary s = entry.summary();
+            sb.append(String.format("%n%s: n=%d, total %.2f ms, p50 %.1f us, p99 %.1f us, max %.1f us",
+                    entry.name(), s.count(), s.totalNanos() / 1_000_000.0,
+                    s.p50Nanos() / 1000.0, s.p99Nanos() / 1000.0, s.maxNanos() / 1000.0));
+        }
+    }
+
+    /**
+     * すべての記録を破棄（ヒストグラム自体はタスクが保持しているため残す）
+     */
+    public static void reset() {
+        PROVIDERS.values().forEach(LatencyHistogram::reset);
+        SUPPLIERS.values().forEach(LatencyHistogram::reset);
+    }
+}
@@ -0,0 +1,167 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 変数キーを "." 区切りの名前空間ごとに保持する接頭辞の索引（トライ木）。
+ * Single Responsibility Principle: 変数キーの接頭辞による検索のみに責任を持つ
+ *
+ * VariableTable のスロットに割り当てられたキーを索引に持つ。プロバイダーの変数も API の変数も
+ * スロットに割り当てられるため、両方を同じ索引で検索できる。
+ * スロットは削除されないため、検索のたびに前回以降に追加されたスロットだけを索引に加える。
+ * 子はセグメント名の順に保持するため、検索結果は並べ替えなしでキー順に得られ、
+ * 接頭辞に一致しない名前空間は走査しない。
+ * "player.it" のように途中で終わる接頭辞は、最後のセグメントを前方一致で扱う。
+ */
+public final class VariableIndex {
+    private final VariableTable table;
+    private final Node root = new Node();
+    // 索引に追加済みのスロット数
+    private int indexed;
+
+    VariableIndex(VariableTable table) {
+        this.table = table;
+    }
+
+    /**
+     * 名前空間の1セグメント
+     */
+    private static final class Node {
+        final Map<String, Node> children = new TreeMap<>();
+        // このノードで終わるキーのスロット、なければ -1
+        int slot = -1;
+    }
+
+    /**
+     * 検索結果の1件
+     */
+    public record Entry(String key, String value) {}
+
+    /**
+     * 検索結果の1ページ
+     *
+     * @param entries このページの変数
+     * @param total   接頭辞に一致する値を持つ変数の総数
+     */
+    public record Page(List<Entry> entries, int total) {}
+
+    /**
+     * 接頭辞に一致し、値を持つ変数をキー順に取得
+     * 一致した変数は数えるだけで、返すのは指定した範囲の分のみ
+     *
+     * @param prefix 接頭辞（"player.item" / "player.item." / "player.item.*"）、空ならすべて
+     * @param offset 先頭から読み飛ばす件数
+     * @param limit  返す最大件数
+     * @param values 値の取得元（通常は公開済みのスナップショット）
+     */
+    public synchronized Page query(String prefix, int offset, int limit, VariableLookup values) {
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        int[] total = new int[1];
+        visit(prefix, (key, slot) -> {
+            String value = values.get(slot, key);
+            if (value == null) return true;
+            int position = total[0]++;
+            if (position >= offset && entries.size() < limit) {
+                entries.add(new Entry(key, value));
+            }
+            return true;
+        });
+        return new Page(entries, total[0]);
+    }
+
+    /**
+     * 入力途中のキーの補完候補をキー順に取得（値を持つ変数のみ）
+     *
+     * @param partial 入力途中のキー
+     * @param limit   最大件数
+     * @param values  値の取得元
+     */
+    public synchronized List<String> complete(String partial, int limit, VariableLookup values) {
+        List<String> keys = new ArrayList<>(limit);
+        visit(partial, (key, slot) -> {
+            if (values.get(slot, key) != null) keys.add(key);
+            return keys.size() < limit;
+        });
+        return keys;
+    }
+
+    /**
+     * 索引に含まれるキーの数
+     */
+    public synchronized int size() {
+        sync();
+        return indexed;
+    }
+
+    @FunctionalInterface
+    private interface Visitor {
+        /**
+         * @return 走査を続ける場合 true
+         */
+        boolean visit(String key, int slot);
+    }
+
+    /**
+     * 接頭辞に一致するキーをキー順に訪問する
+     */
+    private void visit(String prefix, Visitor visitor) {
+        sync();
+        String normalized = prefix == null ? "" : prefix.endsWith("*") ? prefix.substring(0, prefix.length() - 1) : prefix;
+
+        // 最後の "." までは完全一致でたどり、残りは子の名前の前方一致で絞り込む
+        Node node = root;
+        int start = 0;
+        int dot;
+        while ((dot = normalized.indexOf('.', start)) >= 0) {
+            node = node.children.get(normalized.substring(start, dot));
+            if (node == null) return;
+            start = dot + 1;
+        }
+        String partial = normalized.substring(start);
+        if (partial.isEmpty() && start == 0) {
+            walk(root, visitor);
+            return;
+        }
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            if (child.getKey().startsWith(partial) && !walk(child.getValue(), visitor)) return;
+        }
+    }
+
+    /**
+     * ノードとその子孫のキーを順に訪問する（自身のキーを子より先に訪問）
+     *
+     * @return 走査を続ける場合 true
+     */
+    private boolean walk(Node node, Visitor visitor) {
+        if (node.slot >= 0 && !visitor.visit(table.keyOf(node.slot), node.slot)) return false;
+        for (Node child : node.children.values()) {
+            if (!walk(child, visitor)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 前回以降に割り当てられたスロットのキーを索引に加える
+     */
+    private void sync() {
+        int size = table.size();
+        for (int slot = indexed; slot < size; slot++) {
+            insert(table.keyOf(slot), slot);
+        }
+        indexed = size;
+    }
+
+    private void insert(String key, int slot) {
+        Node node = root;
+        int start = 0;
+        int dot;
+        while ((dot = key.indexOf('.', start)) >= 0) {
+            node = node.children.computeIfAbsent(key.substring(start, dot), k -> new Node());
+            start = dot + 1;
+        }
+        node.children.computeIfAbsent(key.substring(start), k -> new Node()).slot = slot;
+    }
+}
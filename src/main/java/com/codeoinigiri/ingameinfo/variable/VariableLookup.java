@@ -0,0 +1,81 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+/**
+ * 式の評価時に変数キーから値を引くための関数インターフェース。
+ * 変数マップ全体を用意せずに、参照されたキーだけを解決できる。
+ * バージョンを提供する実装では、式の結果を入力が変わるまで再利用できる。
+ */
+@FunctionalInterface
+public interface VariableLookup {
+    /**
+     * @param key 変数キー (例: "player.posX")
+     * @return 値、または存在しない場合は null
+     */
+    String get(String key);
+
+    /**
+     * キーの値のバージョンを取得。値が変わるたびに異なる値を返す。
+     * 追跡できない値（毎回計算される値など）には {@link #VOLATILE} を返す。
+     *
+     * @param key 変数キー
+     * @return バージョン番号、存在しないキーは 0
+     */
+    default long version(String key) {
+        return VOLATILE;
+    }
+
+    /**
+     * スロット番号で値を取得。スロットを持つ実装は配列アクセスだけで解決できる
+     *
+     * @param slot VariableTable のスロット番号
+     * @param key  変数キー（スロットを使わない実装用）
+     * @return 値、または存在しない場合は null
+     */
+    default String get(int slot, String key) {
+        return get(key);
+    }
+
+    /**
+     * スロットの値が数値として保持されているか（文字列からのパースが不要か）
+     *
+     * @param slot VariableTable のスロット番号
+     * @param key  変数キー
+     */
+    default boolean isNumber(int slot, String key) {
+        return false;
+    }
+
+    /**
+     * スロットの数値を取得（isNumber が true の場合のみ呼ばれる）
+     *
+     * @param slot VariableTable のスロット番号
+     * @param key  変数キー
+     */
+    default double getNumber(int slot, String key) {
+        return Double.parseDouble(get(slot, key));
+    }
+
+    /**
+     * スロット番号でバージョンを取得
+     *
+     * @param slot VariableTable のスロット番号
+     * @param key  変数キー（スロットを使わない実装用）
+     * @return バージョン番号
+     */
+    default long version(int slot, String key) {
+        return version(key);
+    }
+
+    /**
+     * すべての値をまとめたバージョン（エポック）を取得。どの値も変わっていなければ同じ値を返す
+     * 依存するキーを1つずつ確認する前に、何も変わっていないことを一度の比較で判断できる
+     *
+     * @return エポック、追跡できない実装は {@link #VOLATILE}
+     */
+    default long epoch() {
+        return VOLATILE;
+    }
+
+    /** 変化を追跡できない値のバージョン（常に再評価が必要） */
+    long VOLATILE = -1;
+}
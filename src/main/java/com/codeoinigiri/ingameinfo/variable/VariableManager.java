@@ -1,26 +1,68 @@
 package com.codeoinigiri.ingameinfo.variable;
 
+import com.codeoinigiri.ingameinfo.api.VariableListener;
 import com.codeoinigiri.ingameinfo.api.VariableRegistryImpl;
+import com.codeoinigiri.ingameinfo.api.VariableSubscription;
+import com.codeoinigiri.ingameinfo.config.ClientConfig;
 import com.codeoinigiri.ingameinfo.variable.provider.*;
 import com.mojang.logging.LogUtils;
+import net.minecraft.client.Minecraft;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
 import org.slf4j.Logger;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 変数を一元管理する中心クラス。
  * Single Responsibility Principle: 変数の管理とプロバイダーの登録のみに責任を持つ
  * Dependency Inversion Principle: 具象クラスではなくIVariableProviderインターフェースに依存
  * Open/Closed Principle: 新しいプロバイダーを追加しやすい設計
+ *
+ * 変数ごとに更新バージョンを持ち、式の結果をキャッシュする側（LineTemplate）が
+ * 入力の変化を検出できるようにする。
+ * 値は VariableTable のスロットに保持し、プロバイダーとコンパイル済みの式は
+ * スロット番号で読み書きする。キー文字列での update / getVariable は互換用に残している。
+ * 描画とコマンドはティックごとに公開される不変のスナップショット（VariableSnapshot）を読む。
+ *
+ * 読み込み済みコンテキストが参照するキーを「需要」として保持し、
+ * プロバイダーは誰も参照していないキーの計算を省略する。
+ * ただし参照されていないキーも数秒ごとに更新するため、/igi list や補完、API からは常に値を確認できる。
+ *
+ * プロバイダーの定期更新は1つのスケジューラー（ProviderScheduler）でまとめて実行する。
+ * 1ティックの処理順は「プロバイダーの更新 → 派生変数 → 窓関数のサンプル → スナップショットの公開 → 変化の通知」で、
+ * プロバイダーの更新のみ設定の予算（providerTickBudgetMicros）を超えた分を次のティックに持ち越す。
  */
-public class VariableManager {
+public class VariableManager implements VariableLookup {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final VariableManager INSTANCE = new VariableManager();
 
-    private final Map<String, String> variables = new ConcurrentHashMap<>();
+    // 内部変数はスロット番号で読み書きするテーブルに保持（バージョンもスロットごとに持つ）
+    private final VariableTable table = VariableTable.getInstance();
     private final List<IVariableProvider> providers = new ArrayList<>();
+    // プロバイダーが生成する変数キー（API からは登録できない）
+    private volatile Set<String> providerKeys = Set.of();
+    // プロバイダーの定期更新をまとめて実行するスケジューラー
+    private final ProviderScheduler scheduler = new ProviderScheduler();
+    // 派生変数はスケジューラーの予算に関係なく毎ティックの最後に評価する
+    private DerivedVariableProvider derivedVariableProvider;
+    private boolean tickRegistered;
+    // 読み込み済みコンテキストが参照する変数キー（null はまだ読み込まれていない）
+    private volatile Set<String> contextKeys;
+    // 計算が必要な変数キー（null はすべて必要とみなす）
+    private volatile Set<String> demandedKeys;
+    // 計算が必要な名前空間（購読された "player.*" など）
+    private volatile String[] demandedPrefixes = new String[0];
+    // 需要が再計算されるたびに進む番号（プロバイダー側のキャッシュの判定用）
+    private volatile int demandGeneration;
+    // ティックの終わりに差し替える不変のスナップショット
+    private final AtomicReference<VariableSnapshot> snapshot = new AtomicReference<>(VariableSnapshot.empty(this));
+    // キーの接頭辞検索の索引（/igi list と行の編集画面の補完で使う）
+    private final VariableIndex index = new VariableIndex(table);
+    // 変数の変化の購読（購読されたキーも需要に含める）
+    private final VariableSubscriptions subscriptions = new VariableSubscriptions(this::recomputeDemand);
 
     private VariableManager() {}
 
@@ -34,6 +76,13 @@ public class VariableManager {
     public void initialize() {
         cleanup();
         registerProviders();
+        // API 変数の Supplier もプロバイダーと同じ予算の中で呼び直す
+        scheduler.schedule("VariableAPI", 1, () -> VariableRegistryImpl.tick(this::isDemanded, getSupplierBudgetNanos()));
+        recomputeDemand();
+        if (!tickRegistered) {
+            MinecraftForge.EVENT_BUS.register(this);
+            tickRegistered = true;
+        }
         LOGGER.info("VariableManager initialized with {} providers", providers.size());
     }
 
@@ -45,15 +94,23 @@ public class VariableManager {
         registerProvider(new PlayerProvider());
         registerProvider(new WorldProvider());
         registerProvider(new SystemProvider());
+        registerProvider(new RuntimeProvider());
+        registerProvider(new StatsProvider());
 
         // イベントマッピングプロバイダーは独自の初期化が必要
         EventMappingProvider eventMappingProvider = new EventMappingProvider();
         registerProvider(eventMappingProvider);
         eventMappingProvider.initialize();
+
+        // 派生変数は他のプロバイダーの値を参照するため最後に登録
+        // 生成するキーは定義の読み込みで決まるため、読み込んでから登録する
+        derivedVariableProvider = new DerivedVariableProvider();
+        derivedVariableProvider.initialize();
+        registerProvider(derivedVariableProvider);
     }
 
     /**
-     * プロバイダーを登録してEvent Busに追加
+     * プロバイダーを登録してEvent Busとスケジューラーに追加
      * Dependency Inversion Principle: インターフェースに依存
      */
     public void registerProvider(IVariableProvider provider) {
@@ -63,16 +120,253 @@ public class VariableManager {
         }
 
         providers.add(provider);
+        if (!provider.getProvidedKeys().isEmpty()) {
+            Set<String> keys = new HashSet<>(providerKeys);
+            keys.addAll(provider.getProvidedKeys());
+            providerKeys = Set.copyOf(keys);
+        }
         MinecraftForge.EVENT_BUS.register(provider);
+        provider.scheduleTasks(scheduler);
         LOGGER.debug("Registered provider: {}", provider.getName());
     }
 
+    // ===============================
+    // ティック処理
+    // ===============================
+
+    /**
+     * 1ティック分の変数の更新を行う
+     */
+    @SubscribeEvent
+    public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+        Minecraft mc = Minecraft.getInstance();
+        if (mc.player == null || mc.level == null) return;
+
+        scheduler.tick(getTickBudgetNanos());
+
+        // 派生変数はすべてのプロバイダーの更新後に評価する
+        if (derivedVariableProvider != null) {
+            derivedVariableProvider.evaluate();
+        }
+
+        // 派生変数を含むすべての変数が揃った時点で窓関数をサンプル
+        ExpressionWindows.sampleAll(this);
+
+        // 描画とコマンドが読むスナップショットを差し替える
+        publishSnapshot();
+
+        // 公開した値の変化を購読者に通知（何も変わっていなければ何もしない）
+        subscriptions.dispatch(snapshot.get());
+    }
+
+    /**
+     * 設定から1ティックの予算を取得（設定の読み込み前は既定値）
+     */
+    private static long getTickBudgetNanos() {
+        if (!ClientConfig.CLIENT_SPEC.isLoaded()) {
+            return ClientConfig.INSTANCE.providerTickBudgetMicros.getDefault() * 1000L;
+        }
+        return ClientConfig.INSTANCE.providerTickBudgetMicros.get() * 1000L;
+    }
+
+    /**
+     * 設定から API 変数の Supplier 1回あたりの予算を取得（設定の読み込み前は既定値）
+     */
+    private static long getSupplierBudgetNanos() {
+        if (!ClientConfig.CLIENT_SPEC.isLoaded()) {
+            return ClientConfig.INSTANCE.apiSupplierBudgetMicros.getDefault() * 1000L;
+        }
+        return ClientConfig.INSTANCE.apiSupplierBudgetMicros.get() * 1000L;
+    }
+
+    /**
+     * スケジューラーの統計を取得（調整用）
+     */
+    public ProviderScheduler.Stats getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
+    /**
+     * プロバイダーの更新と Supplier 呼び出しの処理時間の要約を取得（/igi stats 用）
+     */
+    public String getCostSummary() {
+        return VariableCosts.summary();
+    }
+
+    /**
+     * 非同期プロバイダーの状態を取得（値の古さの確認用）
+     */
+    public List<AsyncVariableProvider.Status> getAsyncProviderStatuses() {
+        List<AsyncVariableProvider.Status> statuses = new ArrayList<>();
+        for (IVariableProvider provider : providers) {
+            if (provider instanceof AsyncVariableProvider async) {
+                statuses.add(async.getStatus());
+            }
+        }
+        return statuses;
+    }
+
+    // ===============================
+    // 変数の需要
+    // ===============================
+
+    /**
+     * 読み込み済みコンテキストが参照する変数キーを設定（コンテキストの読み込み時に呼ばれる）
+     *
+     * @param keys HUD の行から参照されている変数キー
+     */
+    public void setContextDemand(Set<String> keys) {
+        contextKeys = Set.copyOf(keys);
+        recomputeDemand();
+    }
+
+    /**
+     * コンテキストの参照キー、プロバイダー自身の入力、購読されたキーから、計算が必要なキーを求め直す
+     */
+    private synchronized void recomputeDemand() {
+        Set<String> context = contextKeys;
+        if (context == null) {
+            demandedKeys = null;
+        } else {
+            Set<String> demand = new HashSet<>(context);
+            for (IVariableProvider provider : providers) {
+                demand.addAll(provider.getRequiredKeys());
+            }
+            List<String> prefixes = new ArrayList<>();
+            subscriptions.collectDemand(demand, prefixes);
+            demandedPrefixes = prefixes.toArray(new String[0]);
+            demandedKeys = Set.copyOf(demand);
+            LOGGER.debug("Variable demand updated: {} keys, {} namespaces", demand.size(), prefixes.size());
+        }
+        demandGeneration++;
+    }
+
+    /**
+     * 登録済みのプロバイダーが生成する変数キーか
+     * これらのキーはプロバイダーがスロットに書き込むため、API から登録するとプロバイダーの値と競合する
+     */
+    public boolean isProviderKey(String key) {
+        return providerKeys.contains(key);
+    }
+
+    /**
+     * 変数キーの値が必要とされているか
+     * コンテキストがまだ読み込まれていない間はすべて必要とみなす
+     */
+    public boolean isDemanded(String key) {
+        Set<String> demand = demandedKeys;
+        return demand == null || demand.contains(key) || isPrefixDemanded(key);
+    }
+
+    /**
+     * 購読された名前空間に含まれるキーか
+     */
+    private boolean isPrefixDemanded(String key) {
+        for (String prefix : demandedPrefixes) {
+            if (key.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * いずれかのキーが必要とされているか（空の場合は宣言なしとして true）
+     */
+    public boolean isAnyDemanded(Set<String> keys) {
+        if (keys.isEmpty()) return true;
+        Set<String> demand = demandedKeys;
+        if (demand == null) return true;
+        for (String key : keys) {
+            if (demand.contains(key) || isPrefixDemanded(key)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 需要が再計算されるたびに変わる番号
+     */
+    public int getDemandGeneration() {
+        return demandGeneration;
+    }
+
+    /**
+     * 変数の変化を購読（VariableAPI.subscribe から呼ばれる）
+     * リスナーはスナップショットの公開後に、そのティックに変わった変数ごとに最終値で一度だけ呼ばれる
+     *
+     * @param keyOrPrefix 変数キー、または "player.*" のような名前空間
+     */
+    public VariableSubscription subscribe(String keyOrPrefix, VariableListener listener) {
+        return subscriptions.subscribe(keyOrPrefix, listener);
+    }
+
     /**
      * 変数を更新（プロバイダーから呼ばれる）
      */
     public void update(String key, String value) {
         if (key == null || value == null) return;
-        variables.put(key, value);
+        table.set(table.intern(key), value);
+    }
+
+    /**
+     * スロット番号で変数を更新（キーのハッシュ計算を省略できる）
+     *
+     * @param slot slotOf で取得したスロット番号
+     */
+    public void update(int slot, String value) {
+        if (value == null) return;
+        table.set(slot, value);
+    }
+
+    /**
+     * 小数の変数を更新。文字列への整形は表示時に値が変わった場合のみ行う
+     */
+    public void update(int slot, double value) {
+        table.set(slot, value);
+    }
+
+    /**
+     * 整数の変数を更新
+     */
+    public void update(int slot, long value) {
+        table.set(slot, value);
+    }
+
+    /**
+     * 真偽値の変数を更新
+     */
+    public void update(int slot, boolean value) {
+        table.set(slot, value);
+    }
+
+    /**
+     * 小数の変数をキーで更新
+     */
+    public void update(String key, double value) {
+        if (key == null) return;
+        table.set(table.intern(key), value);
+    }
+
+    /**
+     * 整数の変数をキーで更新
+     */
+    public void update(String key, long value) {
+        if (key == null) return;
+        table.set(table.intern(key), value);
+    }
+
+    /**
+     * 真偽値の変数をキーで更新
+     */
+    public void update(String key, boolean value) {
+        if (key == null) return;
+        table.set(table.intern(key), value);
+    }
+
+    /**
+     * キーのスロット番号を取得（プロバイダーの初期化時などに一度だけ呼ぶ）
+     */
+    public int slotOf(String key) {
+        return table.intern(key);
     }
 
     /**
@@ -80,27 +374,213 @@ public class VariableManager {
      * 内部変数と外部API変数をマージして返す
      */
     public Map<String, String> getResolvedVariables() {
-        Map<String, String> resolved = new HashMap<>(variables);
+        Map<String, String> resolved = new HashMap<>(getSnapshot().asMap());
         resolved.putAll(VariableRegistryImpl.getAll());
         return Collections.unmodifiableMap(resolved);
     }
 
+    /**
+     * 最後に公開されたスナップショットを取得
+     * 1フレームの描画では最初に一度だけ取得し、すべてのコンテキストで同じものを使う
+     */
+    public VariableSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * 現在の値からスナップショットを作成して公開（ティックの終わりに一度だけ呼ばれる）
+     *
+     * 内部変数に値がないスロットは外部API変数で補う。Supplier の結果は RefreshPolicy に従ってキャッシュされており、
+     * 取得のたびに呼ぶ変数（everyRead）のみここで一度だけ評価し、値が前回と同じならバージョンを据え置く。
+     * どのスロットも変わっていなければ前回のスナップショットをそのまま使う。
+     * 取得のたびに呼ぶ動的な変数がなくエポックも前回と同じなら、書き写し自体を省略する。
+     */
+    public void publishSnapshot() {
+        VariableSnapshot previous = snapshot.get();
+        if (table.epoch() == previous.tableEpoch() && table.size() == previous.size() && !VariableRegistryImpl.hasVolatile()) {
+            // 前回からどの値も変わっていない
+            return;
+        }
+
+        long tableEpoch;
+        int size;
+        byte[] types;
+        double[] numbers;
+        long[] integers;
+        String[] texts;
+        long[] versions;
+        // スロットの書き写しは一括更新（VariableAPI.batch）と排他し、途中の状態を載せない
+        synchronized (table.batchLock) {
+            // 書き写す前にエポックを読む（書き写し中の更新は次回に必ず検出される）
+            tableEpoch = table.epoch();
+            size = table.size();
+            types = new byte[size];
+            numbers = new double[size];
+            integers = new long[size];
+            texts = new String[size];
+            versions = new long[size];
+            for (int i = 0; i < size; i++) {
+                versions[i] = table.copyTo(i, types, numbers, integers, texts);
+            }
+        }
+        boolean changed = size != previous.size();
+        // Supplier の値の補完で採番されたバージョンも含め、スナップショット内の最大のバージョン
+        long maxVersion = tableEpoch;
+
+        // スロットに値がないキーは Supplier を呼ぶ可能性があるため、ロックの外で補う
+        for (int i = 0; i < size; i++) {
+            long version = versions[i];
+            if (types[i] == VariableTable.TYPE_NONE) {
+                String key = table.keyOf(i);
+                // 公開はキャッシュのみを使い、参照されていない Supplier を毎ティック呼ばない
+                String value = VariableRegistryImpl.getCached(key);
+                version = VariableRegistryImpl.getVersion(key);
+                if (version == VOLATILE) {
+                    boolean same = i < previous.size() && Objects.equals(previous.textAt(i), value);
+                    version = same ? previous.versionAt(i) : table.nextVersion();
+                }
+                if (value != null) {
+                    types[i] = VariableTable.TYPE_STRING;
+                    texts[i] = value;
+                }
+            } else if (texts[i] == null && i < previous.size() && previous.versionAt(i) == version) {
+                // 値が変わっていなければ前回整形した文字列を引き継ぐ（整形は値が変わった時だけ）
+                texts[i] = previous.formattedTextAt(i);
+            }
+            versions[i] = version;
+            if (version > maxVersion) maxVersion = version;
+            if (!changed && version != previous.versionAt(i)) changed = true;
+        }
+
+        if (changed) {
+            // 補完で採番されたバージョンはロックの前に読んだエポックより新しいため、エポックに反映する
+            // （反映しないと毎回計算される値だけが変わった時に前回と同じエポックになり、変化が見落とされる）
+            long epoch = Math.max(maxVersion, previous.epoch() + 1);
+            snapshot.set(new VariableSnapshot(types, numbers, integers, texts, versions, epoch, tableEpoch, this));
+        }
+    }
+
+    /**
+     * 接頭辞に一致し値を持つ変数を、公開済みのスナップショットからキー順に1ページ分取得
+     *
+     * @param prefix 接頭辞（"player.item" / "player.item.*"）、空ならすべて
+     * @param offset 先頭から読み飛ばす件数
+     * @param limit  最大件数
+     */
+    public VariableIndex.Page findVariables(String prefix, int offset, int limit) {
+        VariableSnapshot current = snapshot.get();
+        // API 変数は明示的な取得として読み、HUD で参照されていない Supplier も呼び直す時期なら最新の値を表示する
+        VariableLookup values = new VariableLookup() {
+            @Override
+            public String get(String key) {
+                String value = VariableRegistryImpl.contains(key) ? VariableRegistryImpl.get(key) : null;
+                return value != null ? value : current.get(key);
+            }
+
+            @Override
+            public String get(int slot, String key) {
+                String value = VariableRegistryImpl.contains(key) ? VariableRegistryImpl.get(key) : null;
+                return value != null ? value : current.get(slot, key);
+            }
+        };
+        return index.query(prefix, offset, limit, values);
+    }
+
+    /**
+     * 入力途中のキーの補完候補を取得（値を持つ変数のみ、キー順）
+     */
+    public List<String> completeKeys(String partial, int limit) {
+        return index.complete(partial, limit, snapshot.get());
+    }
+
     /**
      * 特定の変数を取得
      */
     public Optional<String> getVariable(String key) {
-        String value = variables.get(key);
-        if (value == null) {
-            value = VariableRegistryImpl.get(key);
+        // 明示的な取得のため、API 変数は呼び直す時期を過ぎていれば呼び直す
+        int slot = table.find(key);
+        String value = slot >= 0 ? table.get(slot) : null;
+        return Optional.ofNullable(value != null ? value : VariableRegistryImpl.get(key));
+    }
+
+    /**
+     * 変数をキーで直接解決（式の評価用）
+     * マップのコピーを作らないため、変数の総数に関係なく一定コスト
+     *
+     * @return 値、または存在しない場合は null
+     */
+    public String lookup(String key) {
+        int slot = table.find(key);
+        return slot >= 0 ? get(slot, key) : VariableRegistryImpl.getCached(key);
+    }
+
+    @Override
+    public String get(String key) {
+        return lookup(key);
+    }
+
+    /**
+     * スロット番号で変数を解決（配列アクセスのみ）
+     * 内部変数に値がなければ外部API変数をキーで探す
+     */
+    @Override
+    public String get(int slot, String key) {
+        String value = table.get(slot);
+        return value != null ? value : VariableRegistryImpl.getCached(key);
+    }
+
+    /**
+     * スロットの値が数値として保持されているか
+     */
+    @Override
+    public boolean isNumber(int slot, String key) {
+        return table.isNumber(slot);
+    }
+
+    /**
+     * スロットの数値を取得（文字列からのパースは行わない）
+     */
+    @Override
+    public double getNumber(int slot, String key) {
+        return table.getNumber(slot);
+    }
+
+    /**
+     * 現在のエポック。取得のたびに Supplier を呼ぶ API 変数がある間は追跡できないため VOLATILE
+     */
+    @Override
+    public long epoch() {
+        return VariableRegistryImpl.hasVolatile() ? VOLATILE : table.epoch();
+    }
+
+    @Override
+    public long version(String key) {
+        int slot = table.find(key);
+        return slot >= 0 ? version(slot, key) : VariableRegistryImpl.getVersion(key);
+    }
+
+    /**
+     * 変数の更新バージョンを取得
+     * 値が更新されるたびに変わるため、前回と同じなら値も変わっていない
+     *
+     * @return バージョン、存在しない場合は 0、追跡できない動的変数は VOLATILE
+     */
+    @Override
+    public long version(int slot, String key) {
+        if (table.hasValue(slot)) {
+            return table.version(slot);
         }
-        return Optional.ofNullable(value);
+        return VariableRegistryImpl.getVersion(key);
     }
 
     /**
      * クリーンアップ処理
      */
     private void cleanup() {
-        variables.clear();
+        table.clearValues();
+        snapshot.set(VariableSnapshot.empty(this));
+        scheduler.clear();
+        derivedVariableProvider = null;
 
         // 既存のプロバイダーをクリーンアップ
         for (IVariableProvider provider : providers) {
@@ -112,6 +592,7 @@ public class VariableManager {
             }
         }
         providers.clear();
+        providerKeys = Set.of();
     }
 
     /**
@@ -125,6 +606,6 @@ public class VariableManager {
      * 登録されている変数の数を取得
      */
     public int getVariableCount() {
-        return variables.size() + VariableRegistryImpl.size();
+        return table.valueCount() + VariableRegistryImpl.size();
     }
 }
@@ -0,0 +1,150 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 1ティック分の変数の値を固定した不変のスナップショット。
+ * Single Responsibility Principle: ある時点の変数の値とバージョンの保持のみに責任を持つ
+ *
+ * VariableManager がティックの終わりに一度だけ生成して差し替える。
+ * 描画やコマンドはスナップショットを読むだけなので割り当てが発生せず、
+ * 同じフレーム内のすべてのコンテキストが同じ値を参照する。
+ * スナップショットの生成後に割り当てられたスロットは fallback（現在の値）で解決する。
+ * 数値は型付きのまま保持し、文字列への整形は表示で要求された時に一度だけ行う。
+ * 値が変わった場合のみ新しいスナップショットが作られ、そのエポックは前のものより必ず大きい。
+ * エポックは毎回計算される Supplier の値の変化も含めた変化の目印で、
+ * 書き写す前に読んだ VariableTable のエポック（tableEpoch）とは別に保持する。
+ */
+public final class VariableSnapshot implements VariableLookup {
+    private final byte[] types;
+    private final double[] numbers;
+    // 整数の正確な値（整数以外のスロットでは 0）
+    private final long[] integers;
+    // 表示用の文字列。数値は初めて要求された時に整形して埋める（同じ結果になるため競合しても問題ない）
+    private final String[] texts;
+    private final long[] versions;
+    private final VariableLookup fallback;
+    private final long epoch;
+    private final long tableEpoch;
+    // コマンド表示用のマップ（必要になった時に一度だけ生成）
+    private volatile Map<String, String> map;
+
+    VariableSnapshot(byte[] types, double[] numbers, long[] integers, String[] texts, long[] versions,
+                     long epoch, long tableEpoch, VariableLookup fallback) {
+        this.types = types;
+        this.numbers = numbers;
+        this.integers = integers;
+        this.texts = texts;
+        this.versions = versions;
+        this.epoch = epoch;
+        this.tableEpoch = tableEpoch;
+        this.fallback = fallback;
+    }
+
+    /**
+     * 値を持たないスナップショット（最初の公開まではすべて fallback で解決する）
+     */
+    static VariableSnapshot empty(VariableLookup fallback) {
+        return new VariableSnapshot(new byte[0], new double[0], new long[0], new String[0], new long[0], VOLATILE, VOLATILE, fallback);
+    }
+
+    @Override
+    public String get(String key) {
+        int slot = VariableTable.getInstance().find(key);
+        return slot >= 0 ? get(slot, key) : fallback.get(key);
+    }
+
+    @Override
+    public String get(int slot, String key) {
+        return slot < texts.length ? textAt(slot) : fallback.get(slot, key);
+    }
+
+    @Override
+    public boolean isNumber(int slot, String key) {
+        if (slot >= types.length) return fallback.isNumber(slot, key);
+        return types[slot] == VariableTable.TYPE_DOUBLE || types[slot] == VariableTable.TYPE_LONG;
+    }
+
+    @Override
+    public double getNumber(int slot, String key) {
+        return slot < numbers.length ? numbers[slot] : fallback.getNumber(slot, key);
+    }
+
+    @Override
+    public long version(String key) {
+        int slot = VariableTable.getInstance().find(key);
+        return slot >= 0 ? version(slot, key) : fallback.version(key);
+    }
+
+    @Override
+    public long version(int slot, String key) {
+        return slot < versions.length ? versions[slot] : fallback.version(slot, key);
+    }
+
+    /**
+     * スナップショットのエポック
+     * スナップショットに含まれるどのバージョンよりも小さくなく、前のスナップショットより必ず大きい
+     */
+    @Override
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * 値を書き写す前に読んだ VariableTable のエポック
+     * 書き写している間の更新は、次の公開時にこの値と比べることで必ず検出される
+     */
+    long tableEpoch() {
+        return tableEpoch;
+    }
+
+    /**
+     * スナップショットに含まれるスロット数
+     */
+    int size() {
+        return texts.length;
+    }
+
+    /**
+     * 表示用の文字列を取得。未整形の数値はここで整形して保持する
+     */
+    String textAt(int slot) {
+        String text = texts[slot];
+        if (text == null && types[slot] != VariableTable.TYPE_NONE) {
+            text = VariableTable.format(types[slot], numbers[slot], integers[slot]);
+            texts[slot] = text;
+        }
+        return text;
+    }
+
+    /**
+     * 整形済みの文字列のみを取得（次のスナップショットへの引き継ぎ用）
+     */
+    String formattedTextAt(int slot) {
+        return texts[slot];
+    }
+
+    long versionAt(int slot) {
+        return versions[slot];
+    }
+
+    /**
+     * 値を持つ変数をキーと値のマップとして取得（コマンド表示など用）
+     */
+    public Map<String, String> asMap() {
+        Map<String, String> result = map;
+        if (result == null) {
+            VariableTable table = VariableTable.getInstance();
+            Map<String, String> built = new LinkedHashMap<>();
+            for (int i = 0; i < texts.length; i++) {
+                String text = textAt(i);
+                if (text != null) built.put(table.keyOf(i), text);
+            }
+            result = Collections.unmodifiableMap(built);
+            map = result;
+        }
+        return result;
+    }
+}
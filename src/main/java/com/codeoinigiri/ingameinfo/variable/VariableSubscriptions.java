@@ -0,0 +1,204 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import com.codeoinigiri.ingameinfo.api.VariableListener;
+import com.codeoinigiri.ingameinfo.api.VariableSubscription;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 変数の変化の購読を管理し、公開されたスナップショットの変化を購読者に通知する。
+ * Single Responsibility Principle: スナップショット間の変化を購読者へ届けることのみに責任を持つ
+ *
+ * 通知はスナップショットの公開直後に1ティックに一度だけ行い、同じティック内の複数回の変更は
+ * そのティックの最終値1回にまとめる。スナップショットのエポックが前回の通知時と同じなら何もしないため、
+ * 値が変わらないティックでは走査も割り当ても発生しない。
+ * 購読ごとに対象のスロットと最後に通知したバージョンを配列で持ち、変化の判定はバージョンの比較のみで行う。
+ * 名前空間の購読（"player.*" など）は、テーブルに新しいキーが追加された時だけ対象のスロットを探し直す。
+ * dispatch はクライアントのメインスレッドからのみ呼ばれる前提。
+ */
+public final class VariableSubscriptions {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final VariableTable table = VariableTable.getInstance();
+    // 購読の変更時に呼ばれる処理（需要の再計算）
+    private final Runnable onChange;
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    // 最後に通知したスナップショットのエポック
+    private long dispatchedEpoch = VariableLookup.VOLATILE;
+    // 新しい購読があり、エポックが同じでも次の通知で現在の値を届ける必要がある
+    private volatile boolean added;
+
+    VariableSubscriptions(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * 1件の購読。対象のスロットと最後に通知したバージョンを持つ
+     */
+    private final class Subscription implements VariableSubscription {
+        final String pattern;
+        final boolean prefix;
+        final VariableListener listener;
+        volatile boolean active = true;
+        // 以下はクライアントスレッドのみで読み書きする
+        int[] slots;
+        long[] seen;
+        int count;
+        // 名前空間の購読で探索済みのスロット数
+        int scanned;
+        boolean failed;
+
+        Subscription(String pattern, boolean prefix, VariableListener listener) {
+            this.pattern = pattern;
+            this.prefix = prefix;
+            this.listener = listener;
+            if (prefix) {
+                slots = new int[4];
+                seen = new long[4];
+            } else {
+                slots = new int[]{table.intern(pattern)};
+                seen = new long[1];
+                count = 1;
+            }
+        }
+
+        void dispatch(VariableSnapshot snapshot, int size) {
+            if (prefix && scanned < size) {
+                for (int slot = scanned; slot < size; slot++) {
+                    if (table.keyOf(slot).startsWith(pattern)) add(slot);
+                }
+                scanned = size;
+            }
+            for (int i = 0; i < count; i++) {
+                int slot = slots[i];
+                if (slot >= size) continue;
+                long version = snapshot.versionAt(slot);
+                // バージョン 0 は一度も値が設定されていないスロット
+                if (version == seen[i]) continue;
+                seen[i] = version;
+                notify(table.keyOf(slot), snapshot.textAt(slot));
+                if (!active) return;
+            }
+        }
+
+        private void add(int slot) {
+            if (count == slots.length) {
+                slots = Arrays.copyOf(slots, count * 2);
+                seen = Arrays.copyOf(seen, count * 2);
+            }
+            slots[count++] = slot;
+        }
+
+        private void notify(String key, String value) {
+            try {
+                listener.onChange(key, value);
+            } catch (Exception e) {
+                // 毎ティック失敗し得るため、スタックトレースは最初の1回だけ出す
+                if (!failed) {
+                    failed = true;
+                    LOGGER.error("Variable listener for '{}' failed on key: {}", pattern, key, e);
+                } else {
+                    LOGGER.debug("Variable listener for '{}' failed on key: {}: {}", pattern, key, e.toString());
+                }
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            if (!active) return;
+            active = false;
+            remove(this);
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    /**
+     * 変数の変化を購読
+     * キーが "*" または "." で終わる場合は名前空間（そのキーで始まるすべての変数）を購読する
+     * 最初の通知では購読時点の値が届く
+     *
+     * @param keyOrPrefix 変数キー、または "player.*" のような名前空間
+     * @param listener    変化を受け取るリスナー
+     */
+    public VariableSubscription subscribe(String keyOrPrefix, VariableListener listener) {
+        if (keyOrPrefix == null || keyOrPrefix.isEmpty() || listener == null) {
+            LOGGER.error("Subscription key and listener cannot be null or empty");
+            return VariableSubscription.NONE;
+        }
+        boolean prefix = keyOrPrefix.endsWith("*") || keyOrPrefix.endsWith(".");
+        String pattern = keyOrPrefix.endsWith("*") ? keyOrPrefix.substring(0, keyOrPrefix.length() - 1) : keyOrPrefix;
+
+        Subscription subscription = new Subscription(pattern, prefix, listener);
+        synchronized (this) {
+            Subscription[] current = subscriptions;
+            Subscription[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = subscription;
+            subscriptions = next;
+        }
+        added = true;
+        onChange.run();
+        LOGGER.debug("Subscribed to {} '{}'", prefix ? "namespace" : "key", pattern);
+        return subscription;
+    }
+
+    private void remove(Subscription subscription) {
+        synchronized (this) {
+            Subscription[] current = subscriptions;
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index < 0) return;
+            Subscription[] next = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, next.length - index);
+            subscriptions = next;
+        }
+        onChange.run();
+    }
+
+    /**
+     * 公開されたスナップショットの変化を購読者に通知（スナップショットの公開直後に一度だけ呼ばれる）
+     */
+    void dispatch(VariableSnapshot snapshot) {
+        Subscription[] current = subscriptions;
+        if (current.length == 0) return;
+        long epoch = snapshot.epoch();
+        if (epoch == dispatchedEpoch && !added) return;
+        dispatchedEpoch = epoch;
+        added = false;
+
+        int size = snapshot.size();
+        for (Subscription subscription : current) {
+            if (subscription.active) subscription.dispatch(snapshot, size);
+        }
+    }
+
+    /**
+     * 購読されているキーと名前空間を需要に加える
+     *
+     * @param keys     購読されているキーの追加先
+     * @param prefixes 購読されている名前空間の追加先
+     */
+    void collectDemand(Set<String> keys, List<String> prefixes) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.prefix) {
+                prefixes.add(subscription.pattern);
+            } else {
+                keys.add(subscription.pattern);
+            }
+        }
+    }
+
+    /**
+     * 購読の数
+     */
+    public int size() {
+        return subscriptions.length;
+    }
+}
@@ -0,0 +1,353 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 変数キーを整数のスロット番号に対応付けて値を保持するテーブル。
+ * Single Responsibility Principle: キーとスロット番号の対応と、スロットごとの値の保持のみに責任を持つ
+ *
+ * キーはプロバイダーの登録時や式のコンパイル時に一度だけスロット番号に変換（intern）し、
+ * 以降の読み書きは配列のインデックスアクセスだけで行う。スロット番号は起動中は変わらない。
+ *
+ * 数値と真偽値はプリミティブのまま保持し（整数は 2^53 を超えても正確に表示できるよう long でも保持する）、文字列への整形は表示で必要になった時に
+ * 値が変わってから一度だけ行う。式は数値をそのまま読むため、整形→パースの往復が発生しない。
+ *
+ * 前回と同じ値の書き込みは無視し、バージョンは値が実際に変わった時だけ進める。
+ * バージョンはすべてのスロットで共有するカウンターから採番するため、キーごとに単調増加し、
+ * カウンターの現在値（エポック）が変わっていなければどの値も変わっていないと判断できる。
+ *
+ * 複数の値の一括更新（applyAtomically）とスナップショットへの書き写しは同じロックで排他するため、
+ * 一括更新の途中の状態がスナップショットに載ることはない。個々の書き込みはこのロックを取らない。
+ */
+public final class VariableTable {
+    private static final VariableTable INSTANCE = new VariableTable();
+    private static final int INITIAL_CAPACITY = 64;
+
+    // スロットの値の型
+    static final byte TYPE_NONE = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_DOUBLE = 2;
+    static final byte TYPE_LONG = 3;
+    static final byte TYPE_BOOLEAN = 4;
+
+    // 小数の表示形式（プロバイダーが使っていた "0.##" と同じ）。DecimalFormat はスレッドセーフではないためスレッドごとに保持
+    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("0.##"));
+
+    // キー → スロット番号（intern 時のみ参照）
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // スロットの配列。拡張時は Slot の参照ごとコピーするため、古い配列への書き込みも失われない
+    private volatile Slot[] slots = new Slot[INITIAL_CAPACITY];
+    // 読み手は size を読んでから slots を読む（size 以下のスロットが必ず見える）
+    private volatile int size;
+    // すべてのスロットで共有する更新カウンター（値が変わるたびに一意なバージョンを採番）
+    private final AtomicLong versionCounter = new AtomicLong();
+    // 一括更新の適用とスナップショットへの書き写しを排他するロック
+    final Object batchLock = new Object();
+
+    private VariableTable() {}
+
+    public static VariableTable getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * スロット1つ分の値とバージョン
+     * 型・数値・文字列は組で更新されるため、読み書きはスロット単位で同期する（競合はほぼ発生しない）
+     */
+    private static final class Slot {
+        final String key;
+        byte type;
+        double number;
+        // 整数の正確な値（TYPE_LONG の場合のみ。number は式から読むための近似値）
+        long integer;
+        // 表示用の文字列。数値の場合は必要になるまで null
+        String text;
+        volatile long version;
+        // API のハンドルが所有するスロット（プロバイダーの再初期化では消さない）
+        boolean external;
+
+        Slot(String key) {
+            this.key = key;
+        }
+
+        synchronized String text() {
+            if (text == null && type != TYPE_NONE) {
+                text = format(type, number, integer);
+            }
+            return text;
+        }
+    }
+
+    /**
+     * キーのスロット番号を取得。未登録なら新しく割り当てる
+     *
+     * @param key 変数キー
+     * @return スロット番号
+     */
+    public int intern(String key) {
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null) return id;
+
+            Slot[] current = slots;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            id = size;
+            current[id] = new Slot(key);
+            slots = current;
+            size = id + 1;
+            ids.put(key, id);
+            return id;
+        }
+    }
+
+    /**
+     * 登録済みのキーのスロット番号を取得（割り当ては行わない）
+     *
+     * @return スロット番号、未登録なら -1
+     */
+    public int find(String key) {
+        Integer id = ids.get(key);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * スロットの値を表示用の文字列で取得。数値は初めて要求された時に整形する
+     *
+     * @return 値、未設定なら null
+     */
+    public String get(int slot) {
+        return slots[slot].text();
+    }
+
+    /**
+     * スロットに値が設定されているか（文字列への整形は行わない）
+     */
+    public boolean hasValue(int slot) {
+        Slot s = slots[slot];
+        synchronized (s) {
+            return s.type != TYPE_NONE;
+        }
+    }
+
+    /**
+     * スロットの値が数値（double / long）か
+     */
+    public boolean isNumber(int slot) {
+        Slot s = slots[slot];
+        synchronized (s) {
+            return s.type == TYPE_DOUBLE || s.type == TYPE_LONG;
+        }
+    }
+
+    /**
+     * スロットの数値を取得（isNumber が true の場合のみ有効）
+     */
+    public double getNumber(int slot) {
+        Slot s = slots[slot];
+        synchronized (s) {
+            return s.number;
+        }
+    }
+
+    /**
+     * スロットの値のバージョンを取得
+     *
+     * @return バージョン、一度も設定されていなければ 0
+     */
+    public long version(int slot) {
+        return slots[slot].version;
+    }
+
+    /**
+     * スロットに文字列を設定し、値が変わっていればバージョンを進める
+     *
+     * @return 値が変わったか
+     */
+    public boolean set(int slot, String value) {
+        return store(slot, value == null ? TYPE_NONE : TYPE_STRING, 0, 0, value);
+    }
+
+    /**
+     * スロットに小数を設定（表示時に "0.##" で整形される）
+     *
+     * @return 値が変わったか
+     */
+    public boolean set(int slot, double value) {
+        return store(slot, TYPE_DOUBLE, value, 0, null);
+    }
+
+    /**
+     * スロットに整数を設定（表示には正確な値を使い、式からは double として読まれる）
+     *
+     * @return 値が変わったか
+     */
+    public boolean set(int slot, long value) {
+        return store(slot, TYPE_LONG, value, value, null);
+    }
+
+    /**
+     * スロットに真偽値を設定
+     *
+     * @return 値が変わったか
+     */
+    public boolean set(int slot, boolean value) {
+        return store(slot, TYPE_BOOLEAN, value ? 1 : 0, 0, value ? "true" : "false");
+    }
+
+    /**
+     * 値が変わった場合のみ書き込み、その後にバージョンを進める（読み手が古い値を新しいバージョンで覚えないように）
+     */
+    private boolean store(int slot, byte type, double number, long integer, String text) {
+        Slot s = slots[slot];
+        synchronized (s) {
+            if (s.type == type && sameValue(s, type, number, integer, text)) {
+                return false;
+            }
+            s.type = type;
+            s.number = number;
+            s.integer = integer;
+            s.text = text;
+            s.version = nextVersion();
+            return true;
+        }
+    }
+
+    /**
+     * 型が同じスロットの値が等しいか
+     * 数値は整形済みの文字列を持っている場合があるため数値だけで比べる（整数は double では区別できない値があるため long で比べる）
+     */
+    private static boolean sameValue(Slot s, byte type, double number, long integer, String text) {
+        return switch (type) {
+            case TYPE_NONE -> true;
+            case TYPE_STRING -> text.equals(s.text);
+            case TYPE_LONG -> s.integer == integer;
+            default -> Double.compare(s.number, number) == 0;
+        };
+    }
+
+    /**
+     * スナップショット用にスロットの値を配列へ書き写す
+     * 文字列が未整形の場合は null のまま写し、整形はスナップショット側で必要になった時に行う
+     *
+     * @return 書き写した値のバージョン
+     */
+    long copyTo(int slot, byte[] types, double[] numbers, long[] integers, String[] texts) {
+        Slot s = slots[slot];
+        synchronized (s) {
+            types[slot] = s.type;
+            numbers[slot] = s.number;
+            integers[slot] = s.integer;
+            texts[slot] = s.text;
+            return s.version;
+        }
+    }
+
+    /**
+     * 新しいバージョン番号を採番（API 変数のバージョンもここから採番し、番号が重複しないようにする）
+     */
+    public long nextVersion() {
+        return versionCounter.incrementAndGet();
+    }
+
+    /**
+     * 最後に採番したバージョン（エポック）
+     * 前回読んだ時と同じなら、その間にどの値も変わっていない
+     */
+    public long epoch() {
+        return versionCounter.get();
+    }
+
+    /**
+     * スロットのキーを取得
+     */
+    public String keyOf(int slot) {
+        return slots[slot].key;
+    }
+
+    /**
+     * 割り当て済みのスロット数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 値が設定されているスロットの数
+     */
+    public int valueCount() {
+        int n = size;
+        Slot[] current = slots;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            synchronized (current[i]) {
+                if (current[i].type != TYPE_NONE) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 複数の書き込みをまとめて適用する
+     * 適用中はスナップショットへの書き写しを待たせるため、書き込みの一部だけが公開されることはない
+     *
+     * @param writes スロットへの書き込み（重い処理や他のロックを待つ処理を含めないこと）
+     */
+    public void applyAtomically(Runnable writes) {
+        synchronized (batchLock) {
+            writes.run();
+        }
+    }
+
+    /**
+     * API のハンドルが所有するスロットかどうかを設定
+     * 所有されているスロットの値は clearValues で破棄されない
+     */
+    public void setExternal(int slot, boolean external) {
+        Slot s = slots[slot];
+        synchronized (s) {
+            s.external = external;
+        }
+    }
+
+    /**
+     * API のハンドルが所有するもの以外のすべての値を破棄する。スロット番号はコンパイル済みの式が保持しているため維持する
+     */
+    public void clearValues() {
+        int n = size;
+        Slot[] current = slots;
+        for (int i = 0; i < n; i++) {
+            boolean external;
+            synchronized (current[i]) {
+                external = current[i].external;
+            }
+            if (!external) set(i, (String) null);
+        }
+    }
+
+    /**
+     * 型付きの値を表示用の文字列に整形（整数は正確な値から整形する）
+     */
+    static String format(byte type, double number, long integer) {
+        return type == TYPE_LONG ? Long.toString(integer) : format(type, number);
+    }
+
+    /**
+     * 型付きの値を表示用の文字列に整形
+     */
+    static String format(byte type, double number) {
+        return switch (type) {
+            case TYPE_DOUBLE -> DECIMAL_FORMAT.get().format(number);
+            case TYPE_LONG -> Long.toString((long) number);
+            case TYPE_BOOLEAN -> number != 0 ? "true" : "false";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,158 @@
+package com.codeoinigiri.ingameinfo.variable;
+
+/**
+ * 時間窓関数（delta, rate, avg, wmin, wmax）のサンプルを保持するリングバッファ。
+ * Single Responsibility Principle: 直近 N ティックのサンプル保持と集計のみに責任を持つ
+ *
+ * 生成時に固定長の double 配列を確保し、以降のサンプル追加では割り当てを行わない。
+ * 集計はサンプル追加時（1ティックに一度）に行い、毎フレームの評価は結果を読むだけにする。
+ * 最小値・最大値は単調キュー（窓内のサンプルの位置を値の順に保持）で求めるため、
+ * 窓の長さに関係なくサンプル追加1回あたり償却 O(1) で済む。
+ * サンプル追加と評価はどちらもクライアントのメインスレッドから呼ばれる前提。
+ */
+final class WindowBuffer {
+    /** 窓の最大長（1時間分のティック） */
+    static final int MAX_TICKS = 20 * 60 * 60;
+    private static final double TICKS_PER_SECOND = 20.0;
+
+    /**
+     * 窓関数の種類
+     */
+    enum Kind {
+        /** 現在値と N ティック前の値の差 */
+        DELTA("delta"),
+        /** N ティックでの1秒あたりの変化量 */
+        RATE("rate"),
+        /** 直近 N ティックの平均 */
+        AVG("avg"),
+        /** 直近 N ティックの最小値 */
+        MIN("wmin"),
+        /** 直近 N ティックの最大値 */
+        MAX("wmax");
+
+        private final String functionName;
+
+        Kind(String functionName) {
+            this.functionName = functionName;
+        }
+
+        String functionName() {
+            return functionName;
+        }
+
+        /**
+         * 関数名から種類を取得
+         *
+         * @return 種類、窓関数でなければ null
+         */
+        static Kind byName(String name) {
+            for (Kind kind : values()) {
+                if (kind.functionName.equals(name)) return kind;
+            }
+            return null;
+        }
+
+        /** 差分系の関数は N ティック前の値も必要なため1つ多く保持する */
+        boolean needsHistory() {
+            return this == DELTA || this == RATE;
+        }
+    }
+
+    private final Kind kind;
+    private final double[] samples;
+    private int head;
+    private int count;
+    private double sum;
+    private double result;
+    // wmin / wmax 用の単調キュー（samples の添字を保持するリングバッファ、他の種類では null）
+    // 先頭が窓内の最小値（wmax では最大値）で、後ろほど新しいサンプル
+    private final int[] extremes;
+    private int extremesHead;
+    private int extremesSize;
+
+    WindowBuffer(Kind kind, int ticks) {
+        this.kind = kind;
+        this.samples = new double[kind.needsHistory() ? ticks + 1 : ticks];
+        this.extremes = kind == Kind.MIN || kind == Kind.MAX ? new int[samples.length] : null;
+    }
+
+    /**
+     * サンプルを追加して集計結果を更新（1ティックに一度）
+     */
+    void push(double value) {
+        double evicted = samples[head];
+        if (extremes != null) pushExtreme(head, value);
+        samples[head] = value;
+        head = head + 1 == samples.length ? 0 : head + 1;
+        if (count < samples.length) {
+            count++;
+        } else {
+            sum -= evicted;
+        }
+        sum += value;
+        // 引き算による誤差の蓄積を防ぐため、一周するごとに合計を計算し直す
+        if (head == 0) sum = total();
+
+        result = switch (kind) {
+            case DELTA -> value - oldest();
+            case RATE -> count > 1 ? (value - oldest()) * TICKS_PER_SECOND / (count - 1) : 0;
+            case AVG -> sum / count;
+            case MIN, MAX -> samples[extremes[extremesHead]];
+        };
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 最後のサンプル時点の集計結果
+     */
+    double result() {
+        return result;
+    }
+
+    void clear() {
+        head = 0;
+        count = 0;
+        sum = 0;
+        result = 0;
+        extremesHead = 0;
+        extremesSize = 0;
+    }
+
+    private double oldest() {
+        int index = head - count;
+        return samples[index < 0 ? index + samples.length : index];
+    }
+
+    private double total() {
+        double total = 0;
+        for (int i = 0; i < count; i++) total += samples[i];
+        return total;
+    }
+
+    /**
+     * 単調キューに新しいサンプルの位置を加える（samples に書き込む前に呼ぶ）
+     * 窓から外れる位置を先頭から除き、新しい値より最小値（最大値）の候補になり得ない位置を末尾から除く
+     *
+     * @param index 新しいサンプルを書き込む位置（窓が一杯なら最も古いサンプルの位置）
+     */
+    private void pushExtreme(int index, double value) {
+        int capacity = extremes.length;
+        if (extremesSize > 0 && extremes[extremesHead] == index && count == samples.length) {
+            extremesHead = extremesHead + 1 == capacity ? 0 : extremesHead + 1;
+            extremesSize--;
+        }
+        boolean max = kind == Kind.MAX;
+        while (extremesSize > 0) {
+            int tail = extremesHead + extremesSize - 1;
+            double last = samples[extremes[tail >= capacity ? tail - capacity : tail]];
+            if (max ? last > value : last < value) break;
+            extremesSize--;
+        }
+        int tail = extremesHead + extremesSize;
+        extremes[tail >= capacity ? tail - capacity : tail] = index;
+        extremesSize++;
+    }
+}
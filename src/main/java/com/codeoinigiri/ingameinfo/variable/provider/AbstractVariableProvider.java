@@ -1,33 +1,40 @@
 package com.codeoinigiri.ingameinfo.variable.provider;
 
+import com.codeoinigiri.ingameinfo.variable.ProviderScheduler;
 import com.codeoinigiri.ingameinfo.variable.VariableManager;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.world.level.Level;
-import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.EntityJoinLevelEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
-import java.text.DecimalFormat;
-import java.util.concurrent.atomic.AtomicLong;
-
 /**
  * 変数プロバイダーの抽象基底クラス
  * Single Responsibility Principle (単一責任の原則): 共通処理のみを担当
  * Open/Closed Principle (開放/閉鎖の原則): 拡張に対して開いている
+ *
+ * 定期更新は各プロバイダーがティックイベントを購読するのではなく、
+ * VariableManager のスケジューラーに updateInterval ごとのタスクとして登録して実行される。
+ *
+ * HUD から参照されていないキーの計算は通常省略するが、/igi list や補完、API からの取得で
+ * 値を確認できるように、IDLE_REFRESH_NANOS ごとに一度は需要に関係なくすべてのキーを更新する。
  */
 public abstract class AbstractVariableProvider implements IVariableProvider {
     protected final Minecraft mc;
     protected final VariableManager manager;
-    protected final DecimalFormat df;
-    private final AtomicLong lastUpdateTick;
+    // 参照されていないキーも含めてすべてのキーを更新する間隔
+    private static final long IDLE_REFRESH_NANOS = 5_000_000_000L;
+
     private final long updateInterval;
+    // 生成するキーのいずれかが参照されているか（需要が変わった時だけ判定し直す）
+    private int demandGeneration = -1;
+    private boolean hasDemand = true;
+    // 需要に関係なくすべてのキーを更新している最中か（クライアントスレッドのみで読み書きする）
+    private boolean refreshingAll;
 
     protected AbstractVariableProvider(long updateInterval) {
         this.mc = Minecraft.getInstance();
         this.manager = VariableManager.getInstance();
-        this.df = new DecimalFormat("0.##");
-        this.lastUpdateTick = new AtomicLong(0);
         this.updateInterval = updateInterval;
     }
 
@@ -66,32 +73,88 @@ public abstract class AbstractVariableProvider implements IVariableProvider {
     }
 
     /**
-     * 更新間隔をチェックして必要に応じて更新
+     * 変数キーが HUD などから参照されているか
+     * 参照されていないキーの計算は省略してよい（すべてのキーを更新する回は常に true）
      */
-    protected boolean shouldUpdate(long currentTick) {
-        long last = lastUpdateTick.get();
-        if (currentTick - last >= updateInterval) {
-            lastUpdateTick.set(currentTick);
-            return true;
+    protected boolean isDemanded(String key) {
+        return refreshingAll || manager.isDemanded(key);
+    }
+
+    /**
+     * 需要に関係なくすべてのキーを更新している最中か
+     */
+    protected boolean isRefreshingAll() {
+        return refreshingAll;
+    }
+
+    /**
+     * 生成するキーのいずれかが参照されているか
+     */
+    private boolean hasDemand() {
+        int generation = manager.getDemandGeneration();
+        if (generation != demandGeneration) {
+            demandGeneration = generation;
+            hasDemand = manager.isAnyDemanded(getProvidedKeys());
         }
-        return false;
+        return hasDemand;
     }
 
-    @SubscribeEvent
-    public void onClientTick(TickEvent.ClientTickEvent event) {
-        if (event.phase != TickEvent.Phase.END) return;
-        if (!isValid()) return;
+    /**
+     * updateInterval ごとに updateVariables を実行するタスクを登録
+     * 更新頻度の異なる変数を持つサブクラスは、頻度ごとにタスクを分けて登録してよい
+     */
+    @Override
+    public void scheduleTasks(ProviderScheduler scheduler) {
+        scheduler.schedule(getName(), updateInterval, guarded(this::updateVariables));
+    }
+
+    /**
+     * プレイヤーとレベルが有効な場合のみ実行するタスクに包む
+     * 生成するキーが参照されていなければ、IDLE_REFRESH_NANOS ごとにすべてのキーを更新する時だけ実行する
+     */
+    protected Runnable guarded(Runnable update) {
+        return new GuardedTask(update);
+    }
+
+    /**
+     * 需要の判定と、参照されていないキーの低頻度の更新を行うタスク
+     */
+    private final class GuardedTask implements Runnable {
+        private final Runnable update;
+        // 最後にすべてのキーを更新した時刻（初回は必ずすべて更新する）
+        private long lastFullRefreshNanos = System.nanoTime() - IDLE_REFRESH_NANOS;
+
+        GuardedTask(Runnable update) {
+            this.update = update;
+        }
 
-        long currentTick = getLevel().getGameTime();
-        if (shouldUpdate(currentTick)) {
-            updateVariables();
+        @Override
+        public void run() {
+            if (!isValid()) return;
+            long now = System.nanoTime();
+            boolean full = now - lastFullRefreshNanos >= IDLE_REFRESH_NANOS;
+            if (!full && !hasDemand()) return;
+            if (full) lastFullRefreshNanos = now;
+            runUpdate(update, full);
         }
     }
 
+    private void runUpdate(Runnable update, boolean all) {
+        refreshingAll = all;
+        try {
+            update.run();
+        } finally {
+            refreshingAll = false;
+        }
+    }
+
+    /**
+     * ワールド参加時はすべてのキーを更新する（参照されていないキーも最初から値を持つように）
+     */
     @SubscribeEvent
     public void onWorldJoin(EntityJoinLevelEvent event) {
         if (event.getEntity() instanceof LocalPlayer) {
-            onWorldJoin();
+            runUpdate(this::onWorldJoin, true);
         }
     }
 
@@ -105,10 +168,49 @@ public abstract class AbstractVariableProvider implements IVariableProvider {
     }
 
     /**
-     * 数値を安全にフォーマットするヘルパーメソッド
+     * スロット番号で変数を安全に更新するヘルパーメソッド
+     * 毎ティック更新する変数はフィールドにスロット番号を保持してこちらを使う
+     */
+    protected void safeUpdate(int slot, String value) {
+        if (value != null) {
+            manager.update(slot, value);
+        }
+    }
+
+    /**
+     * 数値をスロットに書き込むヘルパーメソッド
+     * 文字列への整形は表示時に値が変わった場合のみ行われる
+     */
+    protected void safeUpdate(int slot, double value) {
+        manager.update(slot, value);
+    }
+
+    /**
+     * 数値をキーで書き込むヘルパーメソッド（整形は表示時に行われる）
+     */
+    protected void safeUpdate(String key, double value) {
+        manager.update(key, value);
+    }
+
+    /**
+     * 整数をキーで書き込むヘルパーメソッド
+     */
+    protected void safeUpdate(String key, long value) {
+        manager.update(key, value);
+    }
+
+    /**
+     * 真偽値をキーで書き込むヘルパーメソッド
+     */
+    protected void safeUpdate(String key, boolean value) {
+        manager.update(key, value);
+    }
+
+    /**
+     * キーのスロット番号を取得するヘルパーメソッド（フィールドの初期化時に使う）
      */
-    protected String formatNumber(double value) {
-        return df.format(value);
+    protected int slot(String key) {
+        return manager.slotOf(key);
     }
 }
 
@@ -0,0 +1,198 @@
+package com.codeoinigiri.ingameinfo.variable.provider;
+
+import com.codeoinigiri.ingameinfo.variable.LatencyHistogram;
+import com.codeoinigiri.ingameinfo.variable.ProviderScheduler;
+import com.codeoinigiri.ingameinfo.variable.VariableCosts;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 重い処理やブロックする処理で値を集める変数プロバイダーの抽象基底クラス
+ * Single Responsibility Principle: 値の収集をクライアントスレッドの外で行い、結果を安全に公開することのみに責任を持つ
+ *
+ * collect は共有の小さなスレッドプールで実行され、集めた値は Results にまとめて保持する。
+ * 結果はクライアントスレッドで毎ティック確認し、揃った値を一度に書き込むため、
+ * 同じ回の結果の一部だけがスナップショットに載ることはない。
+ * 収集中や失敗時は前回の値がそのまま表示される。
+ * 前回の収集が終わっていなければ次の収集は開始しない（同時に実行されるのは1つだけ）。
+ */
+public abstract class AsyncVariableProvider extends AbstractVariableProvider {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int THREAD_COUNT = 2;
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "IngameInfo-Async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    // 収集が完了し、まだ書き込まれていない結果
+    private final AtomicReference<Results> completed = new AtomicReference<>();
+    private volatile long lastStartNanos;
+    private volatile long lastSuccessNanos;
+    private volatile long lastDurationNanos;
+    private volatile String lastError;
+    private final AtomicInteger failures = new AtomicInteger();
+    // 実行中の収集がすべてのキーを対象とするか（収集スレッドから isDemanded で参照する）
+    private volatile boolean collectingAll;
+    // 収集にかかった時間の分布（クライアントスレッド外の処理のため、スケジューラーのタスクとは別に記録）
+    private LatencyHistogram collectCost;
+
+    protected AsyncVariableProvider(long updateInterval) {
+        super(updateInterval);
+    }
+
+    /**
+     * 1回の収集で得た値
+     * 収集スレッドで書き込み、クライアントスレッドで一度だけ読む
+     */
+    protected static final class Results {
+        private final List<String> keys = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+
+        public void put(String key, String value) {
+            add(key, value);
+        }
+
+        public void put(String key, double value) {
+            add(key, value);
+        }
+
+        public void put(String key, long value) {
+            add(key, value);
+        }
+
+        public void put(String key, boolean value) {
+            add(key, value);
+        }
+
+        private void add(String key, Object value) {
+            if (key == null || value == null) return;
+            keys.add(key);
+            values.add(value);
+        }
+    }
+
+    /**
+     * 非同期プロバイダーの状態（デバッグ表示用）
+     *
+     * @param name        プロバイダー名
+     * @param refreshing  収集中か
+     * @param ageMillis   最後に成功した収集からの経過時間（ミリ秒）、一度も成功していなければ -1
+     * @param lastMillis  最後の収集にかかった時間（ミリ秒）
+     * @param failures    失敗した回数
+     * @param lastError   最後のエラー、なければ null
+     */
+    public record Status(String name, boolean refreshing, long ageMillis, double lastMillis,
+                         int failures, String lastError) {}
+
+    /**
+     * 値を収集する（クライアントスレッド外で実行される）
+     * Minecraft のクライアントの状態には触れず、スレッドセーフな情報源のみを使うこと
+     *
+     * @param results 収集した値の書き込み先
+     */
+    protected abstract void collect(Results results) throws Exception;
+
+    /**
+     * 収集の開始と、完了した結果の書き込みを別のタスクとして登録する
+     * 結果の書き込みは毎ティック確認するため、収集の完了から表示までの遅れは最大1ティック
+     */
+    @Override
+    public void scheduleTasks(ProviderScheduler scheduler) {
+        super.scheduleTasks(scheduler);
+        collectCost = VariableCosts.provider(getName() + "/collect");
+        scheduler.schedule(getName() + "/publish", 1, this::publishCompleted);
+    }
+
+    /**
+     * 前回の収集が終わっていれば、新しい収集を開始する
+     */
+    @Override
+    protected void updateVariables() {
+        if (!inFlight.compareAndSet(false, true)) return;
+
+        collectingAll = isRefreshingAll();
+        lastStartNanos = System.nanoTime();
+        try {
+            EXECUTOR.execute(this::runCollect);
+        } catch (RejectedExecutionException e) {
+            inFlight.set(false);
+            LOGGER.warn("Async refresh of {} was rejected", getName());
+        }
+    }
+
+    /**
+     * 収集スレッドからも正しく判定できるよう、収集開始時の「すべて更新」の状態を使う
+     */
+    @Override
+    protected boolean isDemanded(String key) {
+        return collectingAll || super.isDemanded(key);
+    }
+
+    private void runCollect() {
+        Results results = new Results();
+        try {
+            collect(results);
+            completed.set(results);
+            lastSuccessNanos = System.nanoTime();
+            lastError = null;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            lastError = e.toString();
+            LOGGER.debug("Async refresh of {} failed", getName(), e);
+        } finally {
+            lastDurationNanos = System.nanoTime() - lastStartNanos;
+            if (collectCost != null) collectCost.record(lastDurationNanos);
+            inFlight.set(false);
+        }
+    }
+
+    /**
+     * 完了した結果をまとめて書き込む（クライアントスレッド）
+     */
+    private void publishCompleted() {
+        Results results = completed.getAndSet(null);
+        if (results == null) return;
+
+        for (int i = 0; i < results.keys.size(); i++) {
+            String key = results.keys.get(i);
+            Object value = results.values.get(i);
+            if (value instanceof Double d) {
+                safeUpdate(key, d.doubleValue());
+            } else if (value instanceof Long l) {
+                safeUpdate(key, l.longValue());
+            } else if (value instanceof Boolean b) {
+                safeUpdate(key, b.booleanValue());
+            } else {
+                safeUpdate(key, value.toString());
+            }
+        }
+    }
+
+    /**
+     * 現在の状態を取得
+     */
+    public Status getStatus() {
+        long success = lastSuccessNanos;
+        long age = success == 0 ? -1 : (System.nanoTime() - success) / 1_000_000;
+        return new Status(getName(), inFlight.get(), age, lastDurationNanos / 1_000_000.0,
+                failures.get(), lastError);
+    }
+}
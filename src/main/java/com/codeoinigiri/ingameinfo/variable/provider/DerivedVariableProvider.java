@@ -0,0 +1,242 @@
+package com.codeoinigiri.ingameinfo.variable.provider;
+
+import com.codeoinigiri.ingameinfo.variable.CompiledExpression;
+import com.codeoinigiri.ingameinfo.variable.ExpressionEvaluator;
+import com.codeoinigiri.ingameinfo.variable.VariableManager;
+import com.electronwill.nightconfig.core.file.CommentedFileConfig;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * derived_variables.toml に定義された式から派生変数を計算します。
+ * Single Responsibility Principle: 派生変数の読み込みと、ティックごとの式の更新のみに責任を持つ
+ *
+ * 派生変数は1ティックに一度だけ評価され、通常の変数と同じく VariableManager に公開される。
+ * 数値や真偽値の結果は文字列に整形せずに書き込むため、他の式から参照しても文字列との変換は起きない。
+ * 評価に失敗したティックは書き込まず、最後に成功した値を残す（エラー表示の文字列を値にしない）。
+ * 複数のコンテキストや行で同じ計算（ネザー座標など）を使っても評価は一度で済む。
+ * 派生変数同士の参照は依存順（トポロジカル順）に評価し、循環は読み込み時に除外する。
+ * 評価は VariableManager がティックの終わりに、プロバイダーの更新後に呼び出す。
+ */
+public class DerivedVariableProvider implements IVariableProvider {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final File CONFIG_FILE = new File("config/ingameinfo/derived_variables.toml");
+
+    private final VariableManager manager;
+    // 評価順に並べた派生変数（読み込み時に丸ごと差し替える）
+    private volatile List<DerivedVariable> ordered = List.of();
+    // 派生変数の式が参照する変数キー（派生変数の入力は HUD から参照されていなくても計算させる）
+    private volatile Set<String> requiredKeys = Set.of();
+    // 派生変数のキー（API からの登録で上書きされないよう、プロバイダーの生成するキーとして公開する）
+    private volatile Set<String> providedKeys = Set.of();
+    // 評価結果をキーへ書き込む（クライアントスレッドのみで使うため使い回す）
+    private final ResultWriter writer = new ResultWriter();
+
+    public DerivedVariableProvider() {
+        this.manager = VariableManager.getInstance();
+    }
+
+    @Override
+    public String getName() {
+        return "DerivedVariableProvider";
+    }
+
+    /**
+     * 派生変数の定義
+     * 式はコンテキスト再読み込みで式のキャッシュが破棄されても追従できるよう、ソースで保持する
+     */
+    public record DerivedVariable(String key, String expression) {}
+
+    @Override
+    public void initialize() {
+        ensureConfigFileExists();
+        reload();
+        LOGGER.info("DerivedVariableProvider initialized with {} derived variables", ordered.size());
+    }
+
+    @Override
+    public void cleanup() {
+        ordered = List.of();
+        requiredKeys = Set.of();
+        providedKeys = Set.of();
+    }
+
+    @Override
+    public Set<String> getRequiredKeys() {
+        return requiredKeys;
+    }
+
+    @Override
+    public Set<String> getProvidedKeys() {
+        return providedKeys;
+    }
+
+    /**
+     * 設定ファイルの存在を確認し、なければ作成
+     */
+    private void ensureConfigFileExists() {
+        File dir = CONFIG_FILE.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            LOGGER.error("Failed to create config directory: {}", dir);
+            return;
+        }
+
+        if (!CONFIG_FILE.exists()) {
+            createDefaultConfig();
+        }
+    }
+
+    /**
+     * 設定を再読み込み
+     */
+    public void reload() {
+        Map<String, CompiledExpression> definitions = new LinkedHashMap<>();
+
+        try (CommentedFileConfig cfg = CommentedFileConfig.builder(CONFIG_FILE).build()) {
+            cfg.load();
+            loadDefinitions(cfg, definitions);
+        } catch (Exception e) {
+            LOGGER.error("Failed to load derived variables", e);
+        }
+
+        ordered = sortByDependencies(definitions);
+        Set<String> required = new HashSet<>();
+        definitions.values().forEach(expression -> required.addAll(expression.getDependencies()));
+        requiredKeys = Set.copyOf(required);
+        providedKeys = Set.copyOf(definitions.keySet());
+        LOGGER.debug("Loaded {} derived variables", ordered.size());
+    }
+
+    /**
+     * 設定から派生変数の定義を読み込む
+     */
+    private void loadDefinitions(CommentedFileConfig cfg, Map<String, CompiledExpression> definitions) {
+        Object derivedObj = cfg.get("derived");
+        if (!(derivedObj instanceof List<?> list)) {
+            return;
+        }
+
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> map)) continue;
+
+            String key = Objects.toString(map.get("key"), "");
+            String expression = Objects.toString(map.get("expression"), "");
+            if (key.isEmpty() || expression.isEmpty()) continue;
+
+            if (definitions.containsKey(key)) {
+                LOGGER.warn("Duplicate derived variable '{}', later definition ignored", key);
+                continue;
+            }
+            definitions.put(key, ExpressionEvaluator.compile(expression.trim()));
+            LOGGER.debug("Registered derived variable: {} = {}", key, expression);
+        }
+    }
+
+    /**
+     * 派生変数を依存順に並べる（Kahn のアルゴリズム）
+     * 循環に含まれる変数はエラーとして報告し、評価対象から除外する
+     */
+    private static List<DerivedVariable> sortByDependencies(Map<String, CompiledExpression> definitions) {
+        // 派生変数 → それを参照している派生変数
+        Map<String, List<String>> dependents = new HashMap<>();
+        Map<String, Integer> pending = new HashMap<>();
+
+        for (Map.Entry<String, CompiledExpression> entry : definitions.entrySet()) {
+            int count = 0;
+            for (String dependency : entry.getValue().getDependencies()) {
+                if (definitions.containsKey(dependency)) {
+                    dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(entry.getKey());
+                    count++;
+                }
+            }
+            pending.put(entry.getKey(), count);
+        }
+
+        Deque<String> ready = new ArrayDeque<>();
+        definitions.keySet().forEach(key -> {
+            if (pending.get(key) == 0) ready.add(key);
+        });
+
+        List<DerivedVariable> result = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String key = ready.poll();
+            result.add(new DerivedVariable(key, definitions.get(key).getSource()));
+            for (String dependent : dependents.getOrDefault(key, List.of())) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (result.size() < definitions.size()) {
+            List<String> cyclic = definitions.keySet().stream()
+                    .filter(key -> pending.get(key) > 0)
+                    .toList();
+            LOGGER.error("Cyclic derived variables ignored: {}", cyclic);
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * デフォルト設定を作成
+     */
+    private void createDefaultConfig() {
+        try (FileWriter w = new FileWriter(CONFIG_FILE)) {
+            writeDefaultConfig(w);
+            LOGGER.info("Created default derived_variables.toml");
+        } catch (IOException e) {
+            LOGGER.error("Failed to create default derived_variables.toml", e);
+        }
+    }
+
+    /**
+     * デフォルト設定を書き込み
+     */
+    private void writeDefaultConfig(FileWriter w) throws IOException {
+        w.write("# Derived variables for IngameInfo HUD (toml)\n");
+        w.write("# Define [[derived]] entries with: key, expression\n");
+        w.write("# The expression uses the same syntax as ${...} in HUD lines and is evaluated once per tick.\n");
+        w.write("# Derived variables may refer to each other; cyclic references are ignored.\n\n");
+        w.write("[[derived]]\n key = \"player.nether_x\"\n expression = \"floor(player.posX / 8)\"\n\n");
+        w.write("[[derived]]\n key = \"player.nether_z\"\n expression = \"floor(player.posZ / 8)\"\n\n");
+    }
+
+    /**
+     * すべての派生変数を依存順に評価（1ティックに一度、他のプロバイダーの更新後に呼ばれる）
+     */
+    public void evaluate() {
+        for (DerivedVariable derived : ordered) {
+            // キャッシュ済みの式を取得するだけなので割り当ては発生しない
+            CompiledExpression expression = ExpressionEvaluator.compile(derived.expression());
+            writer.key = derived.key();
+            expression.evaluateTyped(manager, writer);
+        }
+    }
+
+    /**
+     * 型付きの評価結果を派生変数のキーへ書き込む
+     */
+    private final class ResultWriter implements CompiledExpression.ResultSink {
+        String key;
+
+        @Override
+        public void number(double value) {
+            manager.update(key, value);
+        }
+
+        @Override
+        public void bool(boolean value) {
+            manager.update(key, value);
+        }
+
+        @Override
+        public void text(String value) {
+            manager.update(key, value);
+        }
+    }
+}
@@ -1,4 +1,9 @@
 package com.codeoinigiri.ingameinfo.variable.provider;
+
+import com.codeoinigiri.ingameinfo.variable.ProviderScheduler;
+
+import java.util.Set;
+
 /**
  * 変数プロバイダーの共通インターフェース
  * Interface Segregation Principle (インターフェース分離の原則) を適用
@@ -17,4 +22,26 @@ public interface IVariableProvider {
      * @return プロバイダー名
      */
     String getName();
+    /**
+     * 定期更新のタスクをスケジューラーに登録（プロバイダーの登録時に一度だけ呼ばれる）
+     * イベント駆動のみのプロバイダーは何も登録しない
+     * @param scheduler VariableManager のスケジューラー
+     */
+    default void scheduleTasks(ProviderScheduler scheduler) {}
+    /**
+     * プロバイダーが生成する変数キー
+     * どのキーも参照されていなければ更新処理を丸ごと省略できる。空の場合は常に更新する
+     * @return 生成する変数キー
+     */
+    default Set<String> getProvidedKeys() {
+        return Set.of();
+    }
+    /**
+     * プロバイダー自身が値の計算に使う変数キー（派生変数の入力など）
+     * これらのキーは HUD から参照されていなくても計算される
+     * @return 参照する変数キー
+     */
+    default Set<String> getRequiredKeys() {
+        return Set.of();
+    }
 }
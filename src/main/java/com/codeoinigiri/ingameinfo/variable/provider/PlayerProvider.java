@@ -1,20 +1,38 @@
 package com.codeoinigiri.ingameinfo.variable.provider;
 
+import com.codeoinigiri.ingameinfo.variable.ProviderScheduler;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.event.entity.living.LivingHurtEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
+import java.util.Set;
+
 /**
  * プレイヤー関連の変数を提供します。
  * Single Responsibility Principle: プレイヤー情報の収集のみに責任を持つ
  * Open/Closed Principle: AbstractVariableProviderを拡張して機能を追加
+ * HUD から参照されていないキーは計算を省略する。
+ * 更新頻度ごとに別のタスクとしてスケジューラーに登録し、中・低頻度の更新が同じティックに重ならないようにする。
  */
 public class PlayerProvider extends AbstractVariableProvider {
     private static final long HIGH_FREQ_INTERVAL = 1L;    // 毎tick (高頻度)
     private static final long MID_FREQ_INTERVAL = 5L;     // 5tick毎 (中頻度)
     private static final long LOW_FREQ_INTERVAL = 20L;    // 20tick毎 (低頻度)
 
+    private static final Set<String> PROVIDED_KEYS = Set.of(
+            "player.posX", "player.posY", "player.posZ", "player.health",
+            "player.name", "player.food", "player.saturation", "player.yaw", "player.pitch",
+            "player.max_health", "player.xp_level", "player.is_flying", "player.is_swimming",
+            "player.item.mainhand", "player.item.offhand", "player.item.helmet",
+            "player.item.chestplate", "player.item.leggings", "player.item.boots");
+
+    // 毎tick更新する変数はスロット番号で書き込む
+    private final int posXSlot = slot("player.posX");
+    private final int posYSlot = slot("player.posY");
+    private final int posZSlot = slot("player.posZ");
+    private final int healthSlot = slot("player.health");
+
     public PlayerProvider() {
         super(HIGH_FREQ_INTERVAL);
     }
@@ -24,55 +42,59 @@ public class PlayerProvider extends AbstractVariableProvider {
         return "PlayerProvider";
     }
 
+    @Override
+    public Set<String> getProvidedKeys() {
+        return PROVIDED_KEYS;
+    }
+
+    @Override
+    public void scheduleTasks(ProviderScheduler scheduler) {
+        scheduler.schedule(getName() + "/high", HIGH_FREQ_INTERVAL, guarded(() -> updateHighFrequency(getPlayer())));
+        scheduler.schedule(getName() + "/mid", MID_FREQ_INTERVAL, guarded(() -> updateMidFrequency(getPlayer())));
+        scheduler.schedule(getName() + "/low", LOW_FREQ_INTERVAL, guarded(() -> updateLowFrequency(getPlayer())));
+    }
+
+    /**
+     * すべての頻度の変数を更新（ワールド参加時の初期更新）
+     */
     @Override
     protected void updateVariables() {
         if (!isValid()) return;
         LocalPlayer player = getPlayer();
-        long gameTick = getLevel().getGameTime();
-
-        // 高頻度更新（毎tick）
         updateHighFrequency(player);
-
-        // 中頻度更新（5tick毎）
-        if (gameTick % MID_FREQ_INTERVAL == 0) {
-            updateMidFrequency(player);
-        }
-
-        // 低頻度更新（20tick毎）
-        if (gameTick % LOW_FREQ_INTERVAL == 0) {
-            updateLowFrequency(player);
-        }
+        updateMidFrequency(player);
+        updateLowFrequency(player);
     }
 
     /**
      * 高頻度更新（位置・体力など）
      */
     private void updateHighFrequency(LocalPlayer player) {
-        safeUpdate("player.posX", formatNumber(player.getX()));
-        safeUpdate("player.posY", formatNumber(player.getY()));
-        safeUpdate("player.posZ", formatNumber(player.getZ()));
-        safeUpdate("player.health", formatNumber(player.getHealth()));
+        if (isDemanded("player.posX")) safeUpdate(posXSlot, player.getX());
+        if (isDemanded("player.posY")) safeUpdate(posYSlot, player.getY());
+        if (isDemanded("player.posZ")) safeUpdate(posZSlot, player.getZ());
+        if (isDemanded("player.health")) safeUpdate(healthSlot, player.getHealth());
     }
 
     /**
      * 中頻度更新（食料・向きなど）
      */
     private void updateMidFrequency(LocalPlayer player) {
-        safeUpdate("player.name", player.getName().getString());
-        safeUpdate("player.food", String.valueOf(player.getFoodData().getFoodLevel()));
-        safeUpdate("player.saturation", formatNumber(player.getFoodData().getSaturationLevel()));
-        safeUpdate("player.yaw", formatNumber(player.getYRot()));
-        safeUpdate("player.pitch", formatNumber(player.getXRot()));
+        if (isDemanded("player.name")) safeUpdate("player.name", player.getName().getString());
+        if (isDemanded("player.food")) safeUpdate("player.food", (long) player.getFoodData().getFoodLevel());
+        if (isDemanded("player.saturation")) safeUpdate("player.saturation", player.getFoodData().getSaturationLevel());
+        if (isDemanded("player.yaw")) safeUpdate("player.yaw", player.getYRot());
+        if (isDemanded("player.pitch")) safeUpdate("player.pitch", player.getXRot());
     }
 
     /**
      * 低頻度更新（装備・ステータスなど）
      */
     private void updateLowFrequency(LocalPlayer player) {
-        safeUpdate("player.max_health", formatNumber(player.getMaxHealth()));
-        safeUpdate("player.xp_level", String.valueOf(player.experienceLevel));
-        safeUpdate("player.is_flying", String.valueOf(player.getAbilities().flying));
-        safeUpdate("player.is_swimming", String.valueOf(player.isSwimming()));
+        if (isDemanded("player.max_health")) safeUpdate("player.max_health", player.getMaxHealth());
+        if (isDemanded("player.xp_level")) safeUpdate("player.xp_level", (long) player.experienceLevel);
+        if (isDemanded("player.is_flying")) safeUpdate("player.is_flying", player.getAbilities().flying);
+        if (isDemanded("player.is_swimming")) safeUpdate("player.is_swimming", player.isSwimming());
 
         updateEquipment(player);
     }
@@ -81,12 +103,12 @@ public class PlayerProvider extends AbstractVariableProvider {
      * 装備情報の更新
      */
     private void updateEquipment(LocalPlayer player) {
-        safeUpdate("player.item.mainhand", getItemName(player.getMainHandItem()));
-        safeUpdate("player.item.offhand", getItemName(player.getOffhandItem()));
-        safeUpdate("player.item.helmet", getItemName(player.getInventory().armor.get(3)));
-        safeUpdate("player.item.chestplate", getItemName(player.getInventory().armor.get(2)));
-        safeUpdate("player.item.leggings", getItemName(player.getInventory().armor.get(1)));
-        safeUpdate("player.item.boots", getItemName(player.getInventory().armor.get(0)));
+        if (isDemanded("player.item.mainhand")) safeUpdate("player.item.mainhand", getItemName(player.getMainHandItem()));
+        if (isDemanded("player.item.offhand")) safeUpdate("player.item.offhand", getItemName(player.getOffhandItem()));
+        if (isDemanded("player.item.helmet")) safeUpdate("player.item.helmet", getItemName(player.getInventory().armor.get(3)));
+        if (isDemanded("player.item.chestplate")) safeUpdate("player.item.chestplate", getItemName(player.getInventory().armor.get(2)));
+        if (isDemanded("player.item.leggings")) safeUpdate("player.item.leggings", getItemName(player.getInventory().armor.get(1)));
+        if (isDemanded("player.item.boots")) safeUpdate("player.item.boots", getItemName(player.getInventory().armor.get(0)));
     }
 
     /**
@@ -101,8 +123,8 @@ public class PlayerProvider extends AbstractVariableProvider {
      */
     @SubscribeEvent
     public void onLivingHurt(LivingHurtEvent event) {
-        if (event.getEntity() instanceof LocalPlayer player) {
-            safeUpdate("player.health", formatNumber(player.getHealth()));
+        if (event.getEntity() instanceof LocalPlayer player && isDemanded("player.health")) {
+            safeUpdate(healthSlot, player.getHealth());
         }
     }
 }
@@ -0,0 +1,63 @@
+package com.codeoinigiri.ingameinfo.variable.provider;
+
+import net.minecraft.client.Minecraft;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Set;
+
+/**
+ * JVM のメモリ・GC とディスクの空き容量の変数を提供します。
+ * Single Responsibility Principle: 実行環境の情報の収集のみに責任を持つ
+ * JMX やファイルシステムへの問い合わせはブロックすることがあるため、非同期で収集する。
+ */
+public class RuntimeProvider extends AsyncVariableProvider {
+    private static final long UPDATE_INTERVAL = 40L; // 2秒(40tick)ごとに更新
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+    private static final double GIGABYTE = MEGABYTE * 1024.0;
+    private static final Set<String> PROVIDED_KEYS = Set.of(
+            "system.memory_used_mb", "system.memory_max_mb",
+            "system.gc_count", "system.gc_time_ms", "system.disk_free_gb");
+
+    public RuntimeProvider() {
+        super(UPDATE_INTERVAL);
+    }
+
+    @Override
+    public String getName() {
+        return "RuntimeProvider";
+    }
+
+    @Override
+    public Set<String> getProvidedKeys() {
+        return PROVIDED_KEYS;
+    }
+
+    @Override
+    protected void collect(Results results) {
+        if (isDemanded("system.memory_used_mb") || isDemanded("system.memory_max_mb")) {
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            results.put("system.memory_used_mb", heap.getUsed() / MEGABYTE);
+            // 最大ヒープが未定義の場合は -1 が返るため、Runtime の上限を使う
+            long max = heap.getMax() >= 0 ? heap.getMax() : Runtime.getRuntime().maxMemory();
+            results.put("system.memory_max_mb", max / MEGABYTE);
+        }
+
+        if (isDemanded("system.gc_count") || isDemanded("system.gc_time_ms")) {
+            long count = 0;
+            long time = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+                time += Math.max(0, gc.getCollectionTime());
+            }
+            results.put("system.gc_count", count);
+            results.put("system.gc_time_ms", time);
+        }
+
+        if (isDemanded("system.disk_free_gb")) {
+            // 作業ディレクトリではなく、ゲームディレクトリのあるドライブの空き容量
+            results.put("system.disk_free_gb", Minecraft.getInstance().gameDirectory.getUsableSpace() / GIGABYTE);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.codeoinigiri.ingameinfo.variable.provider;
+
+import com.codeoinigiri.ingameinfo.variable.ExpressionDiagnostics;
+import com.codeoinigiri.ingameinfo.variable.ProviderScheduler;
+import com.codeoinigiri.ingameinfo.variable.VariableCosts;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * IngameInfo 自身の処理時間などの変数（igi.*）を提供します。
+ * Single Responsibility Principle: スケジューラーと処理時間の記録を HUD 用の変数に変換することのみに責任を持つ
+ * HUD に置いて、どのプロバイダーや Supplier が重いかをゲーム中に確認するために使う。
+ */
+public class StatsProvider extends AbstractVariableProvider {
+    private static final long UPDATE_INTERVAL = 20L; // 1秒(20tick)ごとに更新
+    private static final Set<String> PROVIDED_KEYS = Set.of(
+            "igi.tick_us", "igi.tick_avg_us", "igi.tick_max_us", "igi.pending_tasks",
+            "igi.provider_p99_us", "igi.slowest_provider",
+            "igi.supplier_p99_us", "igi.slowest_supplier", "igi.errors");
+
+    public StatsProvider() {
+        super(UPDATE_INTERVAL);
+    }
+
+    @Override
+    public String getName() {
+        return "StatsProvider";
+    }
+
+    @Override
+    public Set<String> getProvidedKeys() {
+        return PROVIDED_KEYS;
+    }
+
+    @Override
+    protected void updateVariables() {
+        ProviderScheduler.Stats stats = manager.getSchedulerStats();
+        if (isDemanded("igi.tick_us")) safeUpdate("igi.tick_us", stats.lastMicros());
+        if (isDemanded("igi.tick_avg_us")) safeUpdate("igi.tick_avg_us", stats.avgMicros());
+        if (isDemanded("igi.tick_max_us")) safeUpdate("igi.tick_max_us", stats.maxMicros());
+        if (isDemanded("igi.pending_tasks")) safeUpdate("igi.pending_tasks", (long) stats.pending());
+
+        if (isDemanded("igi.provider_p99_us") || isDemanded("igi.slowest_provider")) {
+            updateSlowest(VariableCosts.providerSummaries(), "igi.provider_p99_us", "igi.slowest_provider");
+        }
+        if (isDemanded("igi.supplier_p99_us") || isDemanded("igi.slowest_supplier")) {
+            updateSlowest(VariableCosts.supplierSummaries(), "igi.supplier_p99_us", "igi.slowest_supplier");
+        }
+
+        if (isDemanded("igi.errors")) safeUpdate("igi.errors", (long) ExpressionDiagnostics.size());
+    }
+
+    /**
+     * p99 が最も大きいものの名前と値を書き込む
+     */
+    private void updateSlowest(List<VariableCosts.Entry> entries, String p99Key, String nameKey) {
+        VariableCosts.Entry slowest = VariableCosts.slowest(entries);
+        safeUpdate(p99Key, slowest != null ? slowest.summary().p99Nanos() / 1000.0 : 0);
+        safeUpdate(nameKey, slowest != null ? slowest.name() : "");
+    }
+}
@@ -1,11 +1,14 @@
 package com.codeoinigiri.ingameinfo.variable.provider;
 
+import java.util.Set;
+
 /**
  * システム関連（FPSなど）の変数を提供します。
  * Single Responsibility Principle: システム情報の収集のみに責任を持つ
  */
 public class SystemProvider extends AbstractVariableProvider {
     private static final long UPDATE_INTERVAL = 20L; // 1秒(20tick)ごとに更新
+    private static final Set<String> PROVIDED_KEYS = Set.of("system.fps", "system.language");
 
     public SystemProvider() {
         super(UPDATE_INTERVAL);
@@ -16,9 +19,14 @@ public class SystemProvider extends AbstractVariableProvider {
         return "SystemProvider";
     }
 
+    @Override
+    public Set<String> getProvidedKeys() {
+        return PROVIDED_KEYS;
+    }
+
     @Override
     protected void updateVariables() {
-        safeUpdate("system.fps", String.valueOf(mc.getFps()));
-        safeUpdate("system.language", mc.options.languageCode);
+        if (isDemanded("system.fps")) safeUpdate("system.fps", (long) mc.getFps());
+        if (isDemanded("system.language")) safeUpdate("system.language", mc.options.languageCode);
     }
 }
\ No newline at end of file
@@ -5,12 +5,18 @@ import net.minecraft.world.level.Level;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
+import java.util.Set;
+
 /**
  * ワールド関連（時間、天候、バイオームなど）の変数を提供します。
  * Single Responsibility Principle: ワールド情報の収集のみに責任を持つ
+ * HUD から参照されていないキーは計算を省略する。
  */
 public class WorldProvider extends AbstractVariableProvider {
     private static final long UPDATE_INTERVAL = 10L; // 10tick毎に更新
+    private static final Set<String> PROVIDED_KEYS = Set.of(
+            "world.time", "world.day", "world.time_str", "world.is_day",
+            "world.weather", "world.biome", "world.dimension");
 
     public WorldProvider() {
         super(UPDATE_INTERVAL);
@@ -21,6 +27,11 @@ public class WorldProvider extends AbstractVariableProvider {
         return "WorldProvider";
     }
 
+    @Override
+    public Set<String> getProvidedKeys() {
+        return PROVIDED_KEYS;
+    }
+
     @Override
     protected void updateVariables() {
         if (!isValid()) return;
@@ -39,19 +50,22 @@ public class WorldProvider extends AbstractVariableProvider {
      */
     private void updateTime(Level level) {
         long dayTime = level.getDayTime() % 24000;
-        safeUpdate("world.time", String.valueOf(dayTime));
-        safeUpdate("world.day", String.valueOf(level.getDayTime() / 24000));
+        if (isDemanded("world.time")) safeUpdate("world.time", dayTime);
+        if (isDemanded("world.day")) safeUpdate("world.day", level.getDayTime() / 24000);
 
-        int hour = (int) ((dayTime + 6000) % 24000) / 1000;
-        int minute = (int) ((dayTime % 1000) * 60 / 1000);
-        safeUpdate("world.time_str", String.format("%02d:%02d", hour, minute));
-        safeUpdate("world.is_day", String.valueOf(level.isDay()));
+        if (isDemanded("world.time_str")) {
+            int hour = (int) ((dayTime + 6000) % 24000) / 1000;
+            int minute = (int) ((dayTime % 1000) * 60 / 1000);
+            safeUpdate("world.time_str", String.format("%02d:%02d", hour, minute));
+        }
+        if (isDemanded("world.is_day")) safeUpdate("world.is_day", level.isDay());
     }
 
     /**
      * 天候情報の更新
      */
     private void updateWeather(Level level) {
+        if (!isDemanded("world.weather")) return;
         String weather = level.isThundering() ? "thunder"
                         : level.isRaining() ? "rain"
                         : "clear";
@@ -62,6 +76,7 @@ public class WorldProvider extends AbstractVariableProvider {
      * バイオーム情報の更新
      */
     private void updateBiome(Level level, LocalPlayer player) {
+        if (!isDemanded("world.biome")) return;
         level.getBiome(player.blockPosition())
              .unwrapKey()
              .ifPresent(biomeKey ->
@@ -73,6 +88,7 @@ public class WorldProvider extends AbstractVariableProvider {
      * ディメンション情報の更新
      */
     private void updateDimension(Level level) {
+        if (!isDemanded("world.dimension")) return;
         safeUpdate("world.dimension", level.dimension().location().toString());
     }
 